@@ -66,6 +66,22 @@ public interface Relation {
             this.mod = mod;
             this.dir = dir;
         }
+        
+        public String getType() {
+            return type;
+        }
+        
+        public String getVal() {
+            return val;
+        }
+        
+        public String getMod() {
+            return mod;
+        }
+        
+        public String getDir() {
+            return dir;
+        }
 
         String type;
         String val;
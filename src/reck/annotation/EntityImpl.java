@@ -51,6 +51,8 @@ import reck.util.Statistics;
  */
 public class EntityImpl implements Entity, Cloneable, Serializable {
     
+    private static final long serialVersionUID = -8054319523198940769L;
+
     /**
      * A leaf node should have a zero-length array for its
      * children. For efficiency, subclasses can use this array as a
@@ -140,14 +142,16 @@ public class EntityImpl implements Entity, Cloneable, Serializable {
                 int ment_Role_Index = RECKConstants.mentionTypes.indexOf(mentionRole);
                 int ment_Reference_Index = RECKConstants.mentionTypes.indexOf(mentionRef);
 
-                Statistics.nbr_mentions++;
-                Statistics.nbr_mentionsPerType[ment_Type_Index]++;
-                if (ment_LDCType_Index != -1)
-                    Statistics.nbr_mentionsPerLDCType[ment_LDCType_Index]++;
-                if (ment_Role_Index != -1)
-                    Statistics.nbr_mentionsPerRole[ment_Role_Index]++;
-                if (ment_Reference_Index != -1)
-                    Statistics.nbr_mentionsPerReference[ment_Reference_Index]++;
+                synchronized (Statistics.class) {
+                    Statistics.nbr_mentions++;
+                    Statistics.nbr_mentionsPerType[ment_Type_Index]++;
+                    if (ment_LDCType_Index != -1)
+                        Statistics.nbr_mentionsPerLDCType[ment_LDCType_Index]++;
+                    if (ment_Role_Index != -1)
+                        Statistics.nbr_mentionsPerRole[ment_Role_Index]++;
+                    if (ment_Reference_Index != -1)
+                        Statistics.nbr_mentionsPerReference[ment_Reference_Index]++;
+                }
                 
             }
             this.setMentions(mentionsList);
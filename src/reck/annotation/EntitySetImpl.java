@@ -45,6 +45,8 @@ import reck.util.Statistics;
  */
 public class EntitySetImpl extends AbstractSet implements EntitySet, Cloneable, Serializable {
 
+    private static final long serialVersionUID = 8512784986070987481L;
+
     /** Construction from Document. */
     public EntitySetImpl(Document doc) {
         this.doc = (DocumentImpl) doc;
@@ -63,12 +65,14 @@ public class EntitySetImpl extends AbstractSet implements EntitySet, Cloneable,
             int ent_SubType_Index = RECKConstants.entitySubTypes.indexOf(entity.type + "." + entity.subtype);
             int ent_Class_Index = RECKConstants.entityClasses.indexOf(entity.clas);
 
-            Statistics.nbr_entities++;
-            Statistics.nbr_entitiesPerType[ent_Type_Index]++;
-            if (ent_SubType_Index != -1)
-                Statistics.nbr_entitiesPerSubType[ent_SubType_Index]++;
-            if (ent_Class_Index != -1)
-                Statistics.nbr_entitiesPerClass[ent_Class_Index]++;
+            synchronized (Statistics.class) {
+                Statistics.nbr_entities++;
+                Statistics.nbr_entitiesPerType[ent_Type_Index]++;
+                if (ent_SubType_Index != -1)
+                    Statistics.nbr_entitiesPerSubType[ent_SubType_Index]++;
+                if (ent_Class_Index != -1)
+                    Statistics.nbr_entitiesPerClass[ent_Class_Index]++;
+            }
         }
     } // construction from document
 
@@ -38,6 +38,8 @@ import reck.trees.RECKDPTreeNodeImpl;
  */
 public class MentionImpl implements Mention, Cloneable, Serializable {
 
+    private static final long serialVersionUID = -926987808590467012L;
+
     public MentionImpl(Entity entity) {
         this.entity = entity;
     }
@@ -116,6 +118,14 @@ public class MentionImpl implements Mention, Cloneable, Serializable {
         this.role = role;
     }
 
+    /**
+     * The role attribute itself: getRole returns the id of the mention,
+     * from which the learning features are built.
+     */
+    public String getRoleAttribute() {
+        return role;
+    }
+
     public String getReference() {
         return reference;
     }
@@ -46,26 +46,43 @@ import reck.util.RECKConstants;
  */
 public class MentionListImpl extends AbstractSet implements MentionList, Cloneable, Serializable {
 
+    private static final long serialVersionUID = -6581211883793459283L;
+
     /** Construction from Document. */
     public MentionListImpl(Document doc) {
         this.doc = doc;
+        ArrayList added = new ArrayList();
         Iterator entityIter = doc.getEntities().iterator();
         while (entityIter.hasNext()) {
             Entity entity = (Entity)entityIter.next();
-            this.addAll(entity.getMentionsAsList());
+            registerMentions(entity.getMentionsAsList(), added);
         }
+        insertSorted(added);
     } // construction from document
     
     /** Construction from Document. */
     public MentionListImpl(EntitySet entities) {
         this.doc = entities.getDocument();
+        ArrayList added = new ArrayList();
         Iterator entityIter = entities.iterator();
         while (entityIter.hasNext()) {
             Entity entity = (Entity)entityIter.next();
-            this.addAll(entity.getMentionsAsList());
+            registerMentions(entity.getMentionsAsList(), added);
         }
+        insertSorted(added);
     } // construction from document
     
+    /** Construction from mentions already in the order of mention extent. */
+    public MentionListImpl(Document doc, List sortedMentions) {
+        this.doc = doc;
+        Iterator mentionIter = sortedMentions.iterator();
+        while (mentionIter.hasNext()) {
+            Mention e = (Mention)mentionIter.next();
+            mentionList.add(e);
+            mentionsById.put(e.getId(), e);
+        }
+    } // construction from sorted mentions
+    
     /** Construction from Entity. */
     public MentionListImpl(Entity entity) {
         this.addAll(entity.getMentionsAsList());
@@ -113,12 +130,17 @@ public class MentionListImpl extends AbstractSet implements MentionList, Cloneab
     public boolean add(Object o) throws ClassCastException {
         // add mention according to the order of mention extent
         Mention e = (Mention) o;
-        int i = 0;
-        while ((i < mentionList.size()) 
-                && (((Mention)mentionList.get(i)).getExtent().getStart().intValue() < e.getExtent().getStart().intValue()
-                || ((((Mention)mentionList.get(i)).getExtent().getStart().intValue() == e.getExtent().getStart().intValue())
-                && (((Mention)mentionList.get(i)).getExtent().getEnd().intValue() < e.getExtent().getEnd().intValue()) ) ) )
-            i++;        
+        int start = e.getExtent().getStart().intValue(), end = e.getExtent().getEnd().intValue();
+        // before the first mention not lower, found by binary search
+        int low = 0, high = mentionList.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareExtent((Mention)mentionList.get(mid), start, end) < 0)
+                low = mid + 1;
+            else
+                high = mid;
+        }
+        int i = low;
         if (i < mentionList.size()) mentionList.add(i, o);
         else mentionList.add(o);
         Object oldValue = mentionsById.put(e.getId(), e);
@@ -145,15 +167,84 @@ public class MentionListImpl extends AbstractSet implements MentionList, Cloneab
         return mentionList.containsAll(c);
     }
 
+    /**
+     * Add mentions in one batch: they are sorted by their extent and merged
+     * into the list, giving the same order as adding them one by one.
+     */
     public boolean addAll(Collection c){
+        ArrayList added = new ArrayList(c.size());
+        boolean changed = registerMentions(c, added);
+        insertSorted(added);
+        return changed;
+    }
+    
+    /**
+     * Index mentions as add() does, collecting those to insert into the list.
+     * Stops after a mention already in the set, as adding them one by one does.
+     */
+    protected boolean registerMentions(Collection c, ArrayList added) {
         Iterator iter = c.iterator();
         while (iter.hasNext()) {
-            Object o = iter.next();
-            if (!add(o))
+            Mention e = (Mention) iter.next();
+            added.add(e);
+            Object oldValue = mentionsById.put(e.getId(), e);
+            if (mentionsByType != null) {
+                addToTypeIndex(e);
+            }
+            if (oldValue == e)
                 return false;
         }
         return true;
     }
+    
+    /**
+     * Insert mentions into the list in the order of mention extent. A mention
+     * goes before the mentions of equal extent already in the list or met
+     * earlier in the batch, like it does with add().
+     */
+    protected void insertSorted(List added) {
+        int n = added.size();
+        if (n == 0)
+            return;
+        
+        long[] starts = new long[n], ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            Charseq extent = ((Mention)added.get(i)).getExtent();
+            starts[i] = extent.getStart().intValue();
+            ends[i] = extent.getEnd().intValue();
+        }
+        int[] order = RECKConstants.sortByOffsets(starts, ends);
+        
+        ArrayList merged = new ArrayList(mentionList.size() + n);
+        int i = 0, j = 0;
+        while (j < n) {
+            int k = order[j];
+            if (i < mentionList.size() 
+                    && compareExtent((Mention)mentionList.get(i), (int)starts[k], (int)ends[k]) < 0)
+                merged.add(mentionList.get(i++));
+            else {
+                merged.add(added.get(k));
+                j++;
+            }
+        }
+        while (i < mentionList.size())
+            merged.add(mentionList.get(i++));
+        
+        mentionList.clear();
+        mentionList.addAll(merged);
+    }
+    
+    /** Compare the extent of a mention to the given offsets. */
+    private static int compareExtent(Mention mention, int start, int end) {
+        Charseq extent = mention.getExtent();
+        int mentionStart = extent.getStart().intValue();
+        if (mentionStart != start)
+            return (mentionStart < start) ? -1 : 1;
+        int mentionEnd = extent.getEnd().intValue();
+        if (mentionEnd != end)
+            return (mentionEnd < end) ? -1 : 1;
+        return 0;
+    }
 
     public boolean addAll(int index, Collection c){
         return mentionList.addAll(index, c);
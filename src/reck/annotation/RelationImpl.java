@@ -45,6 +45,8 @@ import reck.util.RECKConstants;
  */
 public class RelationImpl implements Relation, Cloneable, Serializable {
     
+    private static final long serialVersionUID = -6861892857905736283L;
+
     public RelationImpl(String id, String type, String subtype) {
         this.id = id;
         this.type = type;
@@ -183,6 +185,14 @@ public class RelationImpl implements Relation, Cloneable, Serializable {
         this.mention_id = mention_id;
     }
     
+    public String getLexicalCondition() {
+        return lexical_condition;
+    }
+    
+    public void setLexicalCondition(String lexical_condition) {
+        this.lexical_condition = lexical_condition;
+    }
+    
     public String getType() {
         return type;
     }
@@ -44,6 +44,8 @@ import reck.util.Statistics;
  */
 public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneable, Serializable {
     
+    private static final long serialVersionUID = -5743280181635544297L;
+
     public RelationSetImpl() {
     }
     
@@ -89,12 +91,14 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
                     int rel_SubType_Index = RECKConstants.relationSubTypes.indexOf(type + "." + subtype);
                     int rel_LDCLexical_Index = RECKConstants.relationLDCLexicalConditions.indexOf(relation.lexical_condition);
 
-                    Statistics.nbr_relations++;
-                    Statistics.nbr_relationsPerType[rel_Type_Index]++;
-                    if (rel_SubType_Index != -1)
-                        Statistics.nbr_relationsPerSubType[rel_SubType_Index]++;
-                    if (rel_LDCLexical_Index != -1)
-                        Statistics.nbr_relationLDCLexicalConditions[rel_LDCLexical_Index]++;
+                    synchronized (Statistics.class) {
+                        Statistics.nbr_relations++;
+                        Statistics.nbr_relationsPerType[rel_Type_Index]++;
+                        if (rel_SubType_Index != -1)
+                            Statistics.nbr_relationsPerSubType[rel_SubType_Index]++;
+                        if (rel_LDCLexical_Index != -1)
+                            Statistics.nbr_relationLDCLexicalConditions[rel_LDCLexical_Index]++;
+                    }
                     }
 
                 }
@@ -141,6 +145,7 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
 
             // remove from type index
             removeFromTypeIndex(lastNext);
+            removeFromMentionIndex(lastNext);
         } // remove()
     }; // AnnotationSetIterator
     
@@ -184,6 +189,11 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
         Object oldValue = relationsById.put(e.getMentionId(), e);
         if (relationsByType != null)
             addToTypeIndex(e);
+        if (relationsByMentions != null && oldValue != e) {
+            if (oldValue != null)
+                removeFromMentionIndex((Relation)oldValue);
+            addToMentionIndex(e);
+        }
         return oldValue != e;
     } // add(o)
     
@@ -267,21 +277,29 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
         return (Relation) relationsById.get(id);
     }
     
+    /** 
+     * Get the relation between two mentions, in any order. When several
+     * relations link the same mentions, the first one met in the ID index
+     * is returned.
+     */
     public Relation getRelationByMentions(Mention mention1, Mention mention2) {
-        Relation relation = null;
+        if (relationsByMentions == null)
+            indexByMentions();
         
-        Iterator idIter = relationsById.keySet().iterator();
-        while (idIter.hasNext()) {
-            String id = (String)idIter.next();
-            Relation rel = getRelationById(id);
-            if ( (rel.getMention(0).getId().equals(mention1.getId()) && rel.getMention(1).getId().equals(mention2.getId()))
-                    || (rel.getMention(1).getId().equals(mention1.getId()) && rel.getMention(0).getId().equals(mention2.getId()))) {
-                relation = rel;
-                break;
-            }
-        }
+        ArrayList sameMentions = (ArrayList)relationsByMentions.get(
+                mentionPairKey(mention1.getId(), mention2.getId()));
+        if (sameMentions == null)
+            return null;
+        if (sameMentions.size() == 1)
+            return (Relation)sameMentions.get(0);
         
-        return relation;
+        Iterator relationIter = relationsById.values().iterator();
+        while (relationIter.hasNext()) {
+            Relation rel = (Relation)relationIter.next();
+            if (sameMentions.contains(rel))
+                return rel;
+        }
+        return null;
     }
 
     /** Select relations by type */
@@ -341,6 +359,51 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
             addToTypeIndex( (Relation) relationIter.next());
     } // indexByType()
 
+    /** Construct the index of the relations by their pair of mentions. */
+    protected void indexByMentions() {
+        if (relationsByMentions != null)
+            return;
+        relationsByMentions = new HashMap();
+        Iterator relationIter = relationsById.values().iterator();
+        while (relationIter.hasNext())
+            addToMentionIndex( (Relation) relationIter.next());
+    } // indexByMentions()
+    
+    /** The key of an unordered pair of mention ids. */
+    protected static String mentionPairKey(String id1, String id2) {
+        if (id1.compareTo(id2) <= 0)
+            return id1 + '\0' + id2;
+        return id2 + '\0' + id1;
+    }
+    
+    /** Add a relation to the mention index. Does nothing if the index
+     * doesn't exist.
+     */
+    protected void addToMentionIndex(Relation e) {
+        if (relationsByMentions == null || e.getMention(0) == null || e.getMention(1) == null)
+            return;
+        String key = mentionPairKey(e.getMention(0).getId(), e.getMention(1).getId());
+        ArrayList sameMentions = (ArrayList) relationsByMentions.get(key);
+        if (sameMentions == null) {
+            sameMentions = new ArrayList(1);
+            relationsByMentions.put(key, sameMentions);
+        }
+        sameMentions.add(e);
+    } // addToMentionIndex(e)
+    
+    /** Remove a relation from the mention index. */
+    protected void removeFromMentionIndex(Relation e) {
+        if (relationsByMentions == null || e.getMention(0) == null || e.getMention(1) == null)
+            return;
+        String key = mentionPairKey(e.getMention(0).getId(), e.getMention(1).getId());
+        ArrayList sameMentions = (ArrayList) relationsByMentions.get(key);
+        if (sameMentions != null) {
+            sameMentions.remove(e);
+            if (sameMentions.isEmpty())
+                relationsByMentions.remove(key);
+        }
+    } // removeFromMentionIndex(e)
+    
     /** Add an annotation to the type index. Does nothing if the index
      * doesn't exist.
      */
@@ -358,8 +421,10 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
     
     /** Remove from the ID index. */
     protected boolean removeFromIdIndex(Relation e) {
-        if (relationsById.remove(e.getId()) == null)
+        Relation removed = (Relation) relationsById.remove(e.getId());
+        if (removed == null)
             return false;
+        removeFromMentionIndex(removed);
         return true;
     } // removeFromIdIndex(e)
 
@@ -382,4 +447,7 @@ public class RelationSetImpl extends AbstractSet implements RelationSet, Cloneab
 
     /** Maps annotation types (Strings) to AnnotationSets */
     protected HashMap relationsByType = null;
+    
+    /** Maps unordered pairs of mention ids to lists of relations, built on the first lookup */
+    protected HashMap relationsByMentions = null;
 }
@@ -23,6 +23,8 @@
 
 package reck.corpora;
 
+import edu.stanford.nlp.trees.Tree;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
@@ -32,22 +34,43 @@ import java.io.FileOutputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Set;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
-import java.util.Vector;
 import reck.Corpus;
 import reck.Document;
 import reck.Entity;
 import reck.Mention;
 import reck.Relation;
 import reck.annotation.RelationImpl;
+import reck.kernels.GramMatrix;
+import reck.kernels.KernelCheck;
+import reck.kernels.KernelModel;
+import reck.kernels.KernelTrainer;
+import reck.kernels.TreeKernelEngine;
 import reck.trees.RECKCTTreeNodeImpl;
 import reck.trees.RECKParseTreeImpl;
 import reck.trees.RECKDPTreeNodeImpl;
+import reck.util.Charseq;
+import reck.util.FeatureDictionary;
+import reck.util.KernelLineEncoder;
 import reck.util.RECKConstants;
 import reck.util.RECKParameters;
 import reck.util.RECKConstants.ReckFilenameFilter;
@@ -62,15 +85,17 @@ import reck.util.TreeUtils;
  */
 public class CorpusImpl implements Corpus, Cloneable, Serializable {
 
+    private static final long serialVersionUID = 8465159932671812441L;
+
     /**
      * Parameters for program execution.
      */
     RECKParameters reckParams = null;
 
     /**
-     * A list of head words of entity mentions.
+     * The dictionary of head words of entity mentions, in order of appearance.
      */
-    public final Vector headwords = new Vector();
+    public final FeatureDictionary headwords = new FeatureDictionary();
     
     /**
      * Construction method.
@@ -88,6 +113,17 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
         this.documentList = documentList;
     }
     
+    /**
+     * Construct a read-only corpus on a part of a <code>CorpusStore</code>,
+     * the documents of which are still decoded when they are accessed.
+     */
+    private CorpusImpl(List storeView, RECKParameters reckParams) {
+        this();
+        this.reckParams = reckParams;
+        this.documentList = storeView;
+        this.readOnly = true;
+    }
+    
     /**
      * Construct a corpus from a set of parameters.
      */
@@ -161,6 +197,46 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
                 compare(reckParams.inputFilename, reckParams.outputFilename);
                 break;
 
+            /** 
+             * convert serialized files to the compact binary format
+             */
+            case 6:
+                convertSerializedFiles(reckParams.inputFilename, reckParams.outputFilename);
+                break;
+
+            /** 
+             * pack serialized files into one corpus store,
+             * read in modes 1-3 without loading every document
+             */
+            case 7:
+                writeToStore(reckParams.inputFilename, reckParams.outputFilename);
+                break;
+
+            /** 
+             * expand learning files written with shared instances (-e 1)
+             * to the training/test files of each relation type
+             */
+            case 8:
+                expandKernelFiles(reckParams.inputFilename, reckParams.outputFilename);
+                break;
+
+            /** 
+             * compute once the kernels of all pairs of the instances 
+             * of all folds, read in mode 10 to train and classify
+             */
+            case 9:
+                computeGramMatrix(reckParams.inputFilename, reckParams.outputFilename);
+                break;
+
+            /** 
+             * train the classifiers of all relation types of each fold and
+             * classify its test instances, with the kernels computed in 
+             * mode 9, once the Java kernels are checked against SVM-light-TK
+             */
+            case 10:
+                trainAndClassifyFolds(reckParams.inputFilename, reckParams.outputFilename);
+                break;
+
             default:
                 
         }
@@ -220,6 +296,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * @return <tt>true</tt>
      */
     public boolean add(Object o){
+        checkModifiable();
         return documentList.add(o);
     }
 
@@ -231,6 +308,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * @return <tt>true</tt> if this list contained the specified element
      */
     public boolean remove(Object o){
+        checkModifiable();
         return documentList.remove(o);
     }
 
@@ -252,6 +330,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * @throws NullPointerException if the specified collection is null
      */
     public boolean addAll(Collection c){
+        checkModifiable();
         return documentList.addAll(c);
     }
 
@@ -267,6 +346,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * @throws NullPointerException if the specified collection is null
      */
     public boolean addAll(int index, Collection c){
+        checkModifiable();
         return documentList.addAll(index, c);
     }
 
@@ -274,14 +354,17 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * Check if it's contained in the specified collection.
      */
     public boolean removeAll(Collection c){
+        checkModifiable();
         return documentList.removeAll(c);
     }
 
     public boolean retainAll(Collection c){
+        checkModifiable();
         return documentList.retainAll(c);
     }
 
     public void clear(){
+        checkModifiable();
         documentList.clear();
     }
 
@@ -301,14 +384,17 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
     }
 
     public Object set(int index, Object element){
+        checkModifiable();
         return documentList.set(index, element);
     }
 
     public void add(int index, Object element){
-    documentList.add(index, element);
+        checkModifiable();
+        documentList.add(index, element);
     }
 
     public Object remove(int index){
+        checkModifiable();
         return documentList.remove(index);
     }
 
@@ -328,9 +414,26 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
         return documentList.listIterator(index);
     }
 
+    /**
+     * Get the documents between two indexes. The part of a corpus read from
+     * a store is a read-only view of the store, so that its documents are 
+     * not all decoded, otherwise it is a copy.
+     */
     public Corpus subList(int fromIndex, int toIndex){
+        if (readOnly)
+            return new CorpusImpl(documentList.subList(fromIndex, toIndex), reckParams);
         return new CorpusImpl(new ArrayList(documentList.subList(fromIndex, toIndex)));
     }
+    
+    /**
+     * Check that the documents of the corpus can be added, set and removed,
+     * which is not the case of a corpus read from a store.
+     * @throws UnsupportedOperationException if the corpus is read-only
+     */
+    private void checkModifiable() {
+        if (readOnly)
+            throw new UnsupportedOperationException("The corpus is read from a store and is read-only");
+    }
 
     /**
      * Print out statistical figures of the corpus
@@ -415,10 +518,18 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
             if (df.isDirectory()) {
                 ReckFilenameFilter annotated_filter = new ReckFilenameFilter(".XML");
                 File[] fs_annotated = df.listFiles(annotated_filter);
+                List processedList = null;
+                if (reckParams != null && reckParams.nbthreads > 1)
+                    processedList = processDocuments(fs_annotated, outputFilename, reckParams.nbthreads);
+                
                 for (int i = 0; i < fs_annotated.length; i++) {
-                    doc = new DocumentImpl(fs_annotated[i]);
+                    if (processedList != null)
+                        doc = (DocumentImpl)processedList.get(i);
+                    else {
+                        doc = new DocumentImpl(fs_annotated[i]);
+                        doc.writeToFile(outputFilename);
+                    }
                     add(doc);
-                    doc.writeToFile(outputFilename);
                     relationListACE.addAll(doc.getRelations());
                     Statistics.nbr_documents++;
 
@@ -439,6 +550,50 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
         }
     }
 
+    /**
+     * Process ACE 2004 documents with several threads, each document 
+     * is exported to a serialized file as soon as it is done.
+     * @param fs_annotated   the annotated files
+     * @param outputFilename the output folder that contains serialized files
+     * @param nbthreads      the number of worker threads
+     * @return the documents, in the same order as the annotated files
+     */
+    public List processDocuments(File[] fs_annotated, final String outputFilename, int nbthreads) 
+            throws java.io.IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(nbthreads);
+        ArrayList futureList = new ArrayList();
+        ArrayList processedList = new ArrayList();
+        
+        for (int i = 0; i < fs_annotated.length; i++) {
+            final File fs = fs_annotated[i];
+            futureList.add(executor.submit(new Callable() {
+                public Object call() throws Exception {
+                    DocumentImpl doc = new DocumentImpl(fs);
+                    doc.writeToFile(outputFilename);
+                    return doc;
+                }
+            }));
+        }
+        
+        try {
+            for (int i = 0; i < futureList.size(); i++)
+                processedList.add(((Future)futureList.get(i)).get());
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new java.io.IOException("Interrupted while processing documents");
+        }
+        catch (ExecutionException exeEx) {
+            exeEx.getCause().printStackTrace();
+            throw new java.io.IOException("Failed to process documents: " + exeEx.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        
+        return processedList;
+    }
+
     /**
      * Write entity head words to a file.
      */
@@ -455,7 +610,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
                     new FileOutputStream(new File(outputFilename + RECKConstants.fileSeparator + "headwords.data"))));
             
             for (int i = 0; i < headwords.size(); i ++) {
-                writer_headwords.write((String)headwords.elementAt(i));
+                writer_headwords.write(headwords.get(i));
                 writer_headwords.newLine();
             }
             
@@ -474,707 +629,533 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
             ArrayList trainingRelationList, ArrayList testRelationList,
             ArrayList<String> markTrainList, ArrayList<String> markTestList,
             String outputFilename) {
+        writeToKernelFile(n_fold, nbr_training, nbr_test, trainingRelationList, testRelationList,
+                markTrainList, markTestList, outputFilename, false);
+    } // writeToKernelFile ___ with n folds
 
-        ArrayList trainingList = new ArrayList();
-        ArrayList testList = new ArrayList();
-        int i, j, k, nbr_rel_types = RECKConstants.relationTypes.size();
-
-        int index1 = RECKConstants.entityTypes.size();
-        int index2 = index1 + RECKConstants.entitySubTypes.size();
-        int index3 = index2 + RECKConstants.mentionTypes.size();
-        int index4 = index3 + RECKConstants.mentionLDCTypes.size();
-        int index5 = index4 + RECKConstants.mentionRoles.size();
-        int index6 = index5 + RECKConstants.mentionReferences.size();
+    /**
+     * Write features of relation instances to training/test files
+     * in n folds
+     */
+    public void writeToKernelFile_All(int n_fold, int nbr_training, int nbr_test,
+            ArrayList trainingRelationList, ArrayList testRelationList, 
+            ArrayList<String> markTrainList, ArrayList<String> markTestList, 
+            String outputFilename) {
+        writeToKernelFile(n_fold, nbr_training, nbr_test, trainingRelationList, testRelationList,
+                markTrainList, markTestList, outputFilename, true);
+    } // writeToKernelFile_All ___ with n folds
 
-        BufferedWriter writer_training = null;
-        BufferedWriter writer_test = null;
+    /**
+     * Write features of relation instances to training/test files
+     * in n folds, with the constituent tree only
+     * or with all trees and sequences
+     */
+    private void writeToKernelFile(int n_fold, int nbr_training, int nbr_test,
+            ArrayList trainingRelationList, ArrayList testRelationList, 
+            ArrayList<String> markTrainList, ArrayList<String> markTestList, 
+            String outputFilename, boolean all) {
 
         try {
-            File f = new File(outputFilename);
-            if (!f.exists())
-                f.mkdir();
-
-            for (i = 0; i < reckParams.nbfolds; i++) {
-                f = new File(outputFilename + RECKConstants.fileSeparator + n_fold);
-                f.mkdir();
-            }
-
-            for (i = 0; i < nbr_rel_types; i++) {
-                writer_training = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(new File(outputFilename
-                        + RECKConstants.fileSeparator + n_fold
-                        + RECKConstants.fileSeparator + i + ".train"))));
-                trainingList.add(writer_training);
-                writer_test = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(new File(outputFilename
-                        + RECKConstants.fileSeparator + n_fold
-                        + RECKConstants.fileSeparator + i + ".test"))));
-                testList.add(writer_test);
-            }
-
-            BufferedWriter gold_train = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(new File(outputFilename
-                    + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "gold_train.data"))));
-
-            BufferedWriter gold_test = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(new File(outputFilename
-                    + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "gold_test.data"))));
-
-            BufferedWriter mark_train = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(new File(outputFilename
-                    + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "train.sent"))));
-
-            BufferedWriter mark_test = new BufferedWriter(new OutputStreamWriter(
-                    new FileOutputStream(new File(outputFilename
-                    + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "test.sent"))));
+            FoldFiles files = openFoldFiles(n_fold, outputFilename);
 
             System.out.println("Output Tree ...");
-            RECKCTTreeNodeImpl CTTree = null;
-
-            for (i = 0; i < nbr_training; i++) {
-                Relation relation = (Relation)trainingRelationList.get(i);
-                int relIndex = RECKConstants.relationTypes.indexOf(relation.getType());
-                ArrayList treeList = relation.getRelationTree();
-                Mention mention1 = relation.getMention(0);
-                Entity entity1 = mention1.getEntity();
-                Mention mention2 = relation.getMention(1);
-                Entity entity2 = mention2.getEntity();
-
-                String st = "";
-
-                /** Tree Kernel
-                  * 0: Constituent Tree with the portion is the Path-Enclosed Tree
-                  */
-
-                Object o = treeList.get(0);
-                StringBuffer sb = new StringBuffer(RECKConstants.INTERNAL_BUFFER_SIZE);
-                CTTree = (RECKCTTreeNodeImpl)o;
-                CTTree.toStringBuffer(sb);
-                st += RECKConstants.begin_tree + " " + sb.toString() + " " + RECKConstants.end_tree;
-
-                int i1 = RECKConstants.entityTypes.indexOf(entity1.getType()) + 1;
-                int i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity1.getSubType()) + 2;
-                int i3 = index2 + RECKConstants.mentionTypes.indexOf(mention1.getType()) + 3;
-                int i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention1.getLDCType()) + 4;
-                int i5 = index4 + RECKConstants.mentionRoles.indexOf(mention1.getRole()) + 5;
-                int i6 = index5 + RECKConstants.mentionReferences.indexOf(mention1.getReference()) + 6;
-                int i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention1.getHeadword()).toLowerCase()) + 7;
-
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-
-                st += " " + RECKConstants.begin_vector;
-                i1 = RECKConstants.entityTypes.indexOf(entity2.getType()) + 1;
-                i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity2.getSubType()) + 2;
-                i3 = index2 + RECKConstants.mentionTypes.indexOf(mention2.getType()) + 3;
-                i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention2.getLDCType()) + 4;
-                i5 = index4 + RECKConstants.mentionRoles.indexOf(mention2.getRole()) + 5;
-                i6 = index5 + RECKConstants.mentionReferences.indexOf(mention2.getReference()) + 6;
-                i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention2.getHeadword()).toLowerCase()) + 7;
-
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                st += " " + RECKConstants.end_vector;
-
-                if ((st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being (human))))))") == -1)
-                        && (st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being)))))") == -1)) {
-
-                    gold_train.write(new Integer(relIndex).toString());
-                    gold_train.newLine();
-
-                    ((BufferedWriter)trainingList.get(relIndex)).write("1 " + st);
-                    ((BufferedWriter)trainingList.get(relIndex)).newLine();
-
-                    for (j = 0; j < nbr_rel_types; j++)
-                        if (j != relIndex) {
-                            ((BufferedWriter)trainingList.get(j)).write("-1 " + st);
-                            ((BufferedWriter)trainingList.get(j)).newLine();
-                        }
-
-                    mark_train.write((String)markTrainList.get(i));
-                    mark_train.newLine();
-                }
-
-            }
-
-            for (i = 0; i < nbr_test; i++) {
-                Relation relation = (Relation)testRelationList.get(i);
-                int relIndex = RECKConstants.relationTypes.indexOf(relation.getType());
-
-                ArrayList treeList = relation.getRelationTree();
-                Mention mention1 = relation.getMention(0);
-                Entity entity1 = mention1.getEntity();
-                Mention mention2 = relation.getMention(1);
-                Entity entity2 = mention2.getEntity();
-
-                String st = "";
-
-                Object o = treeList.get(0);
-                StringBuffer sb = new StringBuffer(RECKConstants.INTERNAL_BUFFER_SIZE);
-                CTTree = (RECKCTTreeNodeImpl)o;
-                CTTree.toStringBuffer(sb);
-                st += RECKConstants.begin_tree + " " + sb.toString() + " " + RECKConstants.end_tree;
-
-                int i1 = RECKConstants.entityTypes.indexOf(entity1.getType()) + 1;
-                int i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity1.getSubType()) + 2;
-                int i3 = index2 + RECKConstants.mentionTypes.indexOf(mention1.getType()) + 3;
-                int i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention1.getLDCType()) + 4;
-                int i5 = index4 + RECKConstants.mentionRoles.indexOf(mention1.getRole()) + 5;
-                int i6 = index5 + RECKConstants.mentionReferences.indexOf(mention1.getReference()) + 6;
-                int i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention1.getHeadword()).toLowerCase()) + 7;
-
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-
-                st += " " + RECKConstants.begin_vector;
-                i1 = RECKConstants.entityTypes.indexOf(entity2.getType()) + 1;
-                i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity2.getSubType()) + 2;
-                i3 = index2 + RECKConstants.mentionTypes.indexOf(mention2.getType()) + 3;
-                i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention2.getLDCType()) + 4;
-                i5 = index4 + RECKConstants.mentionRoles.indexOf(mention2.getRole()) + 5;
-                i6 = index5 + RECKConstants.mentionReferences.indexOf(mention2.getReference()) + 6;
-                i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention2.getHeadword()).toLowerCase()) + 7;
-
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                st += " " + RECKConstants.end_vector;
-
-                if ((st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being (human))))))") == -1)
-                        && (st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being)))))") == -1)) {
-
-                    gold_test.write(new Integer(relIndex).toString());
-                    gold_test.newLine();
-
-                    ((BufferedWriter)testList.get(relIndex)).write("1 " + st);
-                    ((BufferedWriter)testList.get(relIndex)).newLine();
-
-                    for (j = 0; j < nbr_rel_types; j++)
-                        if (j != relIndex) {
-                            ((BufferedWriter)testList.get(j)).write("-1 " + st);
-                            ((BufferedWriter)testList.get(j)).newLine();
-                        }
-
-                    mark_test.write((String)markTestList.get(i));
-                    mark_test.newLine();
-                }
-            }
+            KernelLineEncoder encoder = new KernelLineEncoder(RECKConstants.INTERNAL_BUFFER_SIZE);
 
+            writeKernelLines(encoder, n_fold, nbr_training, trainingRelationList, markTrainList,
+                    files.trainingList, files.shared_train, files.gold_train, files.mark_train, all);
+            writeKernelLines(encoder, n_fold, nbr_test, testRelationList, markTestList,
+                    files.testList, files.shared_test, files.gold_test, files.mark_test, all);
+            
             System.out.println("Output Tree completed");
-
-            for (i = 0; i < nbr_rel_types; i++) {
-                ((BufferedWriter)trainingList.get(i)).close();
-                ((BufferedWriter)testList.get(i)).close();
-            }
-
-            mark_train.close();
-            mark_test.close();
-            gold_train.close();
-            gold_test.close();
+            files.close();
         }
         catch (java.io.IOException ioEx) {
             ioEx.printStackTrace();
         }
-    } // writeToKernelFile ___ with n folds
+    }
 
     /**
-     * Write features of relation instances to training/test files
-     * in n folds
+     * Create the folder of a fold and open its training/test files
      */
-    public void writeToKernelFile_All(int n_fold, int nbr_training, int nbr_test,
-            ArrayList trainingRelationList, ArrayList testRelationList, 
-            ArrayList<String> markTrainList, ArrayList<String> markTestList, 
-            String outputFilename) {
-
-        ArrayList trainingList = new ArrayList();
-        ArrayList testList = new ArrayList();
-        int i, j, k, nbr_rel_types = RECKConstants.relationTypes.size();
-        
-        int index1 = RECKConstants.entityTypes.size();
-        int index2 = index1 + RECKConstants.entitySubTypes.size();
-        int index3 = index2 + RECKConstants.mentionTypes.size();
-        int index4 = index3 + RECKConstants.mentionLDCTypes.size();
-        int index5 = index4 + RECKConstants.mentionRoles.size();
-        int index6 = index5 + RECKConstants.mentionReferences.size();
+    private FoldFiles openFoldFiles(int n_fold, String outputFilename) throws java.io.IOException {
+        FoldFiles files = new FoldFiles();
+        int i, nbr_rel_types = RECKConstants.relationTypes.size();
         
-        BufferedWriter writer_training = null;
-        BufferedWriter writer_test = null;
-        
-        try {
-            File f = new File(outputFilename);
-            if (!f.exists())
-                f.mkdir();
-
-            for (i = 0; i < reckParams.nbfolds; i++) {
-                f = new File(outputFilename + RECKConstants.fileSeparator + n_fold);
-                f.mkdir();
-            }
-            
-            for (i = 0; i < nbr_rel_types; i++) {
-                writer_training = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(new File(outputFilename 
-                        + RECKConstants.fileSeparator + n_fold
-                        + RECKConstants.fileSeparator + i + ".train"))));
-                trainingList.add(writer_training);
-                writer_test = new BufferedWriter(new OutputStreamWriter(
-                        new FileOutputStream(new File(outputFilename 
-                        + RECKConstants.fileSeparator + n_fold
-                        + RECKConstants.fileSeparator + i + ".test"))));
-                testList.add(writer_test);
-            }
+        File f = new File(outputFilename);
+        if (!f.exists())
+            f.mkdir();
 
-            BufferedWriter gold_train = new BufferedWriter(new OutputStreamWriter(
+        for (i = 0; i < reckParams.nbfolds; i++) {
+            f = new File(outputFilename + RECKConstants.fileSeparator + n_fold);
+            f.mkdir();
+        }
+        
+        // with shared instances, the files of relation types hold the labels only
+        String suffix = reckParams.sharedInstances ? LABELS_SUFFIX : "";
+        for (i = 0; i < nbr_rel_types; i++) {
+            files.trainingList.add(new BufferedOutputStream(
                     new FileOutputStream(new File(outputFilename 
                     + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "gold_train.data"))));
-
-            BufferedWriter gold_test = new BufferedWriter(new OutputStreamWriter(
+                    + RECKConstants.fileSeparator + i + ".train" + suffix)), RECKConstants.INTERNAL_BUFFER_SIZE));
+            files.testList.add(new BufferedOutputStream(
                     new FileOutputStream(new File(outputFilename 
                     + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "gold_test.data"))));
+                    + RECKConstants.fileSeparator + i + ".test" + suffix)), RECKConstants.INTERNAL_BUFFER_SIZE));
+        }
 
-            BufferedWriter mark_train = new BufferedWriter(new OutputStreamWriter(
+        if (reckParams.sharedInstances) {
+            files.shared_train = new BufferedOutputStream(
                     new FileOutputStream(new File(outputFilename 
                     + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "train.sent"))));
-
-            BufferedWriter mark_test = new BufferedWriter(new OutputStreamWriter(
+                    + RECKConstants.fileSeparator + "train" + SHARED_SUFFIX)), RECKConstants.INTERNAL_BUFFER_SIZE);
+            files.shared_test = new BufferedOutputStream(
                     new FileOutputStream(new File(outputFilename 
                     + RECKConstants.fileSeparator + n_fold
-                    + RECKConstants.fileSeparator + "test.sent"))));
+                    + RECKConstants.fileSeparator + "test" + SHARED_SUFFIX)), RECKConstants.INTERNAL_BUFFER_SIZE);
+        }
 
-            System.out.println("Output Tree ...");
-            RECKDPTreeNodeImpl DPTree = null;
-            RECKCTTreeNodeImpl CTTree = null;
-
-            for (i = 0; i < nbr_training; i++) {
-                Relation relation = (Relation)trainingRelationList.get(i);
-                int relIndex = RECKConstants.relationTypes.indexOf(relation.getType());
-                ArrayList treeList = relation.getRelationTree();
-                Mention mention1 = relation.getMention(0);
-                Entity entity1 = mention1.getEntity();
-                Mention mention2 = relation.getMention(1);
-                Entity entity2 = mention2.getEntity();
-                
-                String st = "";
-                
-                /** Tree Kernel 
-                  * 0: Constituent Tree with the portion is the Path-Enclosed Tree
-                  * 1: Dependency based-Words
-                  * 2: Dependency based-Grammatical Relations
-                  * 3: Dependency based-Grammatical Relations inserted before Words
-                  */
-                
-                for (k = 0; k < treeList.size(); k++) {
-                    Object o = treeList.get(k);
-                    StringBuffer sb = new StringBuffer(RECKConstants.INTERNAL_BUFFER_SIZE);
-                    if (o instanceof RECKDPTreeNodeImpl) {
-                        DPTree = (RECKDPTreeNodeImpl)o;
-                        DPTree.toStringBuffer(sb);
-                    }
-                    else {
-                        CTTree = (RECKCTTreeNodeImpl)o;
-                        CTTree.toStringBuffer(sb);
-                    }
-                    st += RECKConstants.begin_tree + " " + sb.toString() + " ";
-                }
-                
-                /** Sequence Kernel 
-                  * Chain of the Constituent --- Path-Enclosed Tree
-                  *     0: Sequence of Words
-                  *     1: Sequence of Part-of-Speechs
-                  *     2: Sequence of Grammatical Relations
-                  * Chain of the Dependency --- Path linking two entities
-                  *     0: Sequence of Words
-                  *     1: Sequence of Part-of-Speechs
-                  *     2: Sequence of Grammatical Relations
-                  */
-                
-                CTTree = (RECKCTTreeNodeImpl)treeList.get(0);
-                List CT_SK = CTTree.getLeaves();
-                DPTree = (RECKDPTreeNodeImpl)treeList.get(1);
-                List DP_SK = TreeUtils.getDependencyPath(DPTree);
-                int markCT = -1;
-                
-                String t1 = "(T1-", t2 = "(T2-";
-                if (RECKConstants.mentionOrder(mention1, mention2)) {
-                    t1 += entity1.getType() + ")";
-                    t2 += entity2.getType() + ")";
-                }
-                else {
-                    t2 += entity1.getType() + ")";
-                    t1 += entity2.getType() + ")";
-                }
-                if (mention1.getHwPosition().getStart().intValue() > mention2.getHwPosition().getStart().intValue()) {
-                    String tmp = t1;
-                    t1 = t2;
-                    t2 = tmp;
-                }
+        files.gold_train = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(outputFilename 
+                + RECKConstants.fileSeparator + n_fold
+                + RECKConstants.fileSeparator + "gold_train.data"))));
 
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (((RECKCTTreeNodeImpl)CT_SK.get(k)).getPosition().getStart().intValue() 
-                            == mention2.getHwPosition().getStart().intValue()) {
-                        markCT = k;
-                        break;
-                    }
-                }
+        files.gold_test = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(outputFilename 
+                + RECKConstants.fileSeparator + n_fold
+                + RECKConstants.fileSeparator + "gold_test.data"))));
 
-                // Constituent --- 0: Sequence of Words
-                st += RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    st += " (" + ((RECKCTTreeNodeImpl)CT_SK.get(k)).label().toString() + ")";
-                }
-                st += ")";
-                
-                // Constituent --- 1: Sequence of Preterminals
-                st += " " + RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    st += " (" + ((RECKCTTreeNodeImpl)CT_SK.get(k)).parent(CTTree).label().toString() + ")";
-                }
-                st += ")";
-                
-                // Constituent --- 2: Sequence of Grammatical Relations
-                ArrayList GRs = TreeUtils.getDependencyList(relation.getRECKParseTree(), CTTree);
-                if (GRs.size() != CTTree.getLeaves().size())
-                    System.err.println("Error ...");
-                st += " " + RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < GRs.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    String role = (String)GRs.get(k);
-                    st += " (" + role + ")";
-                }
-                st += ")";
-                
-                // Dependency --- 0: Sequence of Words
-                // Dependency --- 1: Sequence of Grammatical Relations
-                // Dependency --- 2: Sequence of Constituents
-                String lbSequence = " " + RECKConstants.begin_tree + " (FAKEROOT",
-                       grSequence = " " + RECKConstants.begin_tree + " (FAKEROOT",
-                       ctSequence = " " + RECKConstants.begin_tree + " (FAKEROOT";
-                for (k = 0; k < DP_SK.size(); k++) {
-                    RECKDPTreeNodeImpl dp = (RECKDPTreeNodeImpl)DP_SK.get(k);
-
-                    lbSequence += " (" + dp.label().toString() + ")";
-
-                    if ( (dp.role() == null) || (dp.role().trim().equals("")) )
-                        grSequence += " (" + dp.label().toString() + ")";
-                    else
-                        grSequence += " (" + dp.role() + ")";
+        files.mark_train = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(outputFilename 
+                + RECKConstants.fileSeparator + n_fold
+                + RECKConstants.fileSeparator + "train.sent"))));
 
-                    if ( (dp.constituent() == null) || (dp.constituent().trim().equals("")) )
-                        ctSequence += " (" + dp.label().toString() + ")";
-                    else
-                        ctSequence += " (" + dp.constituent() + ")";
-                }
-                lbSequence += ")";
-                grSequence += ")";
-                ctSequence += ")";
-                
-                st += lbSequence + grSequence + ctSequence;
-                
-                st += " " + RECKConstants.end_tree;
-
-                int i1 = RECKConstants.entityTypes.indexOf(entity1.getType()) + 1;
-                int i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity1.getSubType()) + 2;
-                int i3 = index2 + RECKConstants.mentionTypes.indexOf(mention1.getType()) + 3;
-                int i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention1.getLDCType()) + 4;
-                int i5 = index4 + RECKConstants.mentionRoles.indexOf(mention1.getRole()) + 5;
-                int i6 = index5 + RECKConstants.mentionReferences.indexOf(mention1.getReference()) + 6;
-                int i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention1.getHeadword()).toLowerCase()) + 7;
-                
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                                
-                st += " " + RECKConstants.begin_vector;
-                i1 = RECKConstants.entityTypes.indexOf(entity2.getType()) + 1;
-                i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity2.getSubType()) + 2;
-                i3 = index2 + RECKConstants.mentionTypes.indexOf(mention2.getType()) + 3;
-                i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention2.getLDCType()) + 4;
-                i5 = index4 + RECKConstants.mentionRoles.indexOf(mention2.getRole()) + 5;
-                i6 = index5 + RECKConstants.mentionReferences.indexOf(mention2.getReference()) + 6;
-                i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention2.getHeadword()).toLowerCase()) + 7;
-                
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                st += " " + RECKConstants.end_vector;
-                
-                if ((st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being (human))))))") == -1)
-                        && (st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being)))))") == -1)) {
+        files.mark_test = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(outputFilename 
+                + RECKConstants.fileSeparator + n_fold
+                + RECKConstants.fileSeparator + "test.sent"))));
 
-                    gold_train.write(new Integer(relIndex).toString());
-                    gold_train.newLine();
-                    
-                    ((BufferedWriter)trainingList.get(relIndex)).write("1 " + st);
-                    ((BufferedWriter)trainingList.get(relIndex)).newLine();
+        return files;
+    }
 
-                    for (j = 0; j < nbr_rel_types; j++) 
-                        if (j != relIndex) {
-                            ((BufferedWriter)trainingList.get(j)).write("-1 " + st);
-                            ((BufferedWriter)trainingList.get(j)).newLine();
-                        }
-                    
-                    mark_train.write((String)markTrainList.get(i));
-                    mark_train.newLine();
-                }
+    /**
+     * Write the lines of relation instances, positive to the file
+     * of their relation type and negative to the others.
+     * With a shared file, the instances are written once to it
+     * and only their labels to the files of relation types.
+     */
+    private void writeKernelLines(KernelLineEncoder encoder, int n_fold, int nbr_rels,
+            ArrayList relationList, ArrayList<String> markList, ArrayList writerList, 
+            BufferedOutputStream shared, BufferedWriter gold, BufferedWriter mark, boolean all) 
+            throws java.io.IOException {
+
+        for (int i = 0; i < nbr_rels; i++) {
+            Relation relation = (Relation)relationList.get(i);
+            KernelInstance instance = getKernelInstance(relation, all);
+
+            encoder.reset();
+            if (all)
+                encodeKernelLine_All(encoder, instance, relation, n_fold);
+            else
+                encodeKernelLine(encoder, instance);
+            writeKernelLine(encoder, relation, (String)markList.get(i), writerList, shared, gold, mark);
+        }
+    }
 
-            }
-            
-            for (i = 0; i < nbr_test; i++) {
-                Relation relation = (Relation)testRelationList.get(i);
-                int relIndex = RECKConstants.relationTypes.indexOf(relation.getType());
-                
-                ArrayList treeList = relation.getRelationTree();
-                Mention mention1 = relation.getMention(0);
-                Entity entity1 = mention1.getEntity();
-                Mention mention2 = relation.getMention(1);
-                Entity entity2 = mention2.getEntity();
-                
-                String st = "";
-                
-                for (k = 0; k < treeList.size(); k++) {
-                    Object o = treeList.get(k);
-                    StringBuffer sb = new StringBuffer(RECKConstants.INTERNAL_BUFFER_SIZE);
-                    if (o instanceof RECKDPTreeNodeImpl) {
-                        DPTree = (RECKDPTreeNodeImpl)o;
-                        DPTree.toStringBuffer(sb);
-                    }
-                    else {
-                        CTTree = (RECKCTTreeNodeImpl)o;
-                        CTTree.toStringBuffer(sb);
-                    }
-                    st += RECKConstants.begin_tree + " " + sb.toString() + " ";
-                }
-                
-                /** Sequence Kernel 
-                  * Chain of the Constituent --- Path-Enclosed Tree
-                  *     0: Sequence of Words
-                  *     1: Sequence of Part-of-Speechs
-                  *     2: Sequence of Grammatical Relations
-                  * Chain of the Dependency --- Path linking two entities
-                  *     0: Sequence of Words
-                  *     1: Sequence of Part-of-Speechs
-                  *     2: Sequence of Grammatical Relations
-                  */
-                
-                CTTree = (RECKCTTreeNodeImpl)treeList.get(0);
-                List CT_SK = CTTree.getLeaves();
-                DPTree = (RECKDPTreeNodeImpl)treeList.get(1);
-                List DP_SK = TreeUtils.getDependencyPath(DPTree);
-                int markCT = -1;
-                
-                String t1 = "(T1-", t2 = "(T2-";
-                if (RECKConstants.mentionOrder(mention1, mention2)) {
-                    t1 += entity1.getType() + ")";
-                    t2 += entity2.getType() + ")";
-                }
-                else {
-                    t2 += entity1.getType() + ")";
-                    t1 += entity2.getType() + ")";
-                }
-                if (mention1.getHwPosition().getStart().intValue() > mention2.getHwPosition().getStart().intValue()) {
-                    String tmp = t1;
-                    t1 = t2;
-                    t2 = tmp;
+    /**
+     * Write the encoded line of a relation instance,
+     * unless it is one of the instances SVM-light-TK cannot read.
+     */
+    private void writeKernelLine(KernelLineEncoder encoder, Relation relation, String relationMark,
+            ArrayList writerList, BufferedOutputStream shared, BufferedWriter gold, BufferedWriter mark) 
+            throws java.io.IOException {
+        int relIndex = RECKConstants.relationTypeDictionary.indexOf(relation.getType());
+
+        if (!encoder.contains("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being (human))))))")
+                && !encoder.contains("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being)))))")) {
+
+            gold.write(new Integer(relIndex).toString());
+            gold.newLine();
+
+            if (shared != null) {
+                encoder.writeTo(shared);
+                shared.write(KernelLineEncoder.NEWLINE);
+                for (int j = 0; j < writerList.size(); j++) {
+                    BufferedOutputStream out = (BufferedOutputStream)writerList.get(j);
+                    out.write((j == relIndex) ? POSITIVE_LABEL : NEGATIVE_LABEL);
+                    out.write(KernelLineEncoder.NEWLINE);
                 }
+                mark.write(relationMark);
+                mark.newLine();
+                return;
+            }
 
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (((RECKCTTreeNodeImpl)CT_SK.get(k)).getPosition().getStart().intValue() 
-                            == mention2.getHwPosition().getStart().intValue()) {
-                        markCT = k;
-                        break;
-                    }
+            BufferedOutputStream out = (BufferedOutputStream)writerList.get(relIndex);
+            out.write(POSITIVE);
+            encoder.writeTo(out);
+            out.write(KernelLineEncoder.NEWLINE);
+
+            for (int j = 0; j < writerList.size(); j++) 
+                if (j != relIndex) {
+                    out = (BufferedOutputStream)writerList.get(j);
+                    out.write(NEGATIVE);
+                    encoder.writeTo(out);
+                    out.write(KernelLineEncoder.NEWLINE);
                 }
 
-                // Constituent --- 0: Sequence of Words
-                st += RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    st += " (" + ((RECKCTTreeNodeImpl)CT_SK.get(k)).label().toString() + ")";
-                }
-                st += ")";
-                
-                // Constituent --- 1: Sequence of Preterminals
-                st += " " + RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < CT_SK.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    st += " (" + ((RECKCTTreeNodeImpl)CT_SK.get(k)).parent(CTTree).label().toString() + ")";
-                }
-                st += ")";
-                
-                // Constituent --- 2: Sequence of Grammatical Relations
-                ArrayList GRs = TreeUtils.getDependencyList(relation.getRECKParseTree(), CTTree);
-                if (GRs.size() != CTTree.getLeaves().size())
-                    System.err.println("Error ...");
-                st += " " + RECKConstants.begin_tree + " (FAKEROOT " + t1;
-                for (k = 0; k < GRs.size(); k++) {
-                    if (k == markCT) st += " " + t2;
-                    String role = (String)GRs.get(k);
-                    st += " (" + role + ")";
-                }
-                st += ")";
-                
-                // Dependency --- 0: Sequence of Words
-                // Dependency --- 1: Sequence of Grammatical Relations
-                // Dependency --- 2: Sequence of Constituents
-                String lbSequence = " " + RECKConstants.begin_tree + " (FAKEROOT",
-                       grSequence = " " + RECKConstants.begin_tree + " (FAKEROOT",
-                       ctSequence = " " + RECKConstants.begin_tree + " (FAKEROOT";
-                for (k = 0; k < DP_SK.size(); k++) {
-                    RECKDPTreeNodeImpl dp = (RECKDPTreeNodeImpl)DP_SK.get(k);
-
-                    lbSequence += " (" + dp.label().toString() + ")";
-
-                    if ( (dp.role() == null) || (dp.role().trim().equals("")) )
-                        grSequence += " (" + dp.label().toString() + ")";
-                    else
-                        grSequence += " (" + dp.role() + ")";
+            mark.write(relationMark);
+            mark.newLine();
+        }
+    }
 
-                    if ( (dp.constituent() == null) || (dp.constituent().trim().equals("")) )
-                        ctSequence += " (" + dp.label().toString() + ")";
-                    else
-                        ctSequence += " (" + dp.constituent() + ")";
-                }
-                lbSequence += ")";
-                grSequence += ")";
-                ctSequence += ")";
-                
-                st += lbSequence + grSequence + ctSequence;
-                
-                st += " " + RECKConstants.end_tree;
-                
-                int i1 = RECKConstants.entityTypes.indexOf(entity1.getType()) + 1;
-                int i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity1.getSubType()) + 2;
-                int i3 = index2 + RECKConstants.mentionTypes.indexOf(mention1.getType()) + 3;
-                int i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention1.getLDCType()) + 4;
-                int i5 = index4 + RECKConstants.mentionRoles.indexOf(mention1.getRole()) + 5;
-                int i6 = index5 + RECKConstants.mentionReferences.indexOf(mention1.getReference()) + 6;
-                int i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention1.getHeadword()).toLowerCase()) + 7;
-                
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                                
-                st += " " + RECKConstants.begin_vector;
-                i1 = RECKConstants.entityTypes.indexOf(entity2.getType()) + 1;
-                i2 = index1 + RECKConstants.entitySubTypes.indexOf(entity2.getSubType()) + 2;
-                i3 = index2 + RECKConstants.mentionTypes.indexOf(mention2.getType()) + 3;
-                i4 = index3 + RECKConstants.mentionLDCTypes.indexOf(mention2.getLDCType()) + 4;
-                i5 = index4 + RECKConstants.mentionRoles.indexOf(mention2.getRole()) + 5;
-                i6 = index5 + RECKConstants.mentionReferences.indexOf(mention2.getReference()) + 6;
-                i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention2.getHeadword()).toLowerCase()) + 7;
-                
-                if (i1 > 0) st += " " + i1 + ":2";
-                if (i2 > 0) st += " " + i2 + ":1";
-                if (i3 > 0) st += " " + i3 + ":1";
-                if (i4 > 0) st += " " + i4 + ":1";
-                if (i5 > 0) st += " " + i5 + ":1";
-                if (i6 > 0) st += " " + i6 + ":1";
-                if (i7 > 0) st += " " + i7 + ":1";
-                st += " " + RECKConstants.end_vector;
-                
-                if ((st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being (human))))))") == -1)
-                        && (st.indexOf("(talking (T2-PER (we)) (3 1/2 (pound (T1-PER (being)))))") == -1)) {
-                    
-                    gold_test.write(new Integer(relIndex).toString());
-                    gold_test.newLine();
-                
-                    ((BufferedWriter)testList.get(relIndex)).write("1 " + st);
-                    ((BufferedWriter)testList.get(relIndex)).newLine();
+    /**
+     * Encode the line of a relation instance with its constituent tree
+     */
+    private void encodeKernelLine(KernelLineEncoder encoder, KernelInstance instance) {
+        /** Tree Kernel
+          * 0: Constituent Tree with the portion is the Path-Enclosed Tree
+          */
+        encoder.append(instance.trees[0]);
+        encoder.append(instance.features);
+    }
 
-                    for (j = 0; j < nbr_rel_types; j++) 
-                        if (j != relIndex) {
-                            ((BufferedWriter)testList.get(j)).write("-1 " + st);
-                            ((BufferedWriter)testList.get(j)).newLine();
-                        }
-                    
-                    mark_test.write((String)markTestList.get(i));
-                    mark_test.newLine();
-                }
-            }
-            
-            System.out.println("Output Tree completed");
+    /**
+     * Encode the line of a relation instance with all its trees and sequences.
+     * The dependency tree is encoded again in each fold: getDependencyPath
+     * swaps the labels and the roles of its path each time it is called.
+     * When the folds are written in parallel, it has been encoded
+     * for each fold beforehand.
+     */
+    private void encodeKernelLine_All(KernelLineEncoder encoder, KernelInstance instance,
+            Relation relation, int n_fold) {
+        ArrayList treeList = relation.getRelationTree();
+
+        /** Tree Kernel 
+          * 0: Constituent Tree with the portion is the Path-Enclosed Tree
+          * 1: Dependency based-Words
+          * 2: Dependency based-Grammatical Relations
+          * 3: Dependency based-Grammatical Relations inserted before Words
+          */
+        for (int k = 0; k < treeList.size(); k++) {
+            if (instance.trees[k] != null)
+                encoder.append(instance.trees[k]);
+            else if (instance.foldTrees != null)
+                encoder.append(instance.foldTrees[n_fold][k]);
+            else
+                encoder.append(RECKConstants.begin_tree).append(' ')
+                        .appendTree((Tree)treeList.get(k)).append(' ');
+        }
 
-            for (i = 0; i < nbr_rel_types; i++) {
-                ((BufferedWriter)trainingList.get(i)).close();
-                ((BufferedWriter)testList.get(i)).close();
-            }
-            
-            mark_train.close();
-            mark_test.close();
-            gold_train.close();
-            gold_test.close();
+        /** Sequence Kernel 
+          * Chain of the Constituent --- Path-Enclosed Tree
+          *     0: Sequence of Words
+          *     1: Sequence of Part-of-Speechs
+          *     2: Sequence of Grammatical Relations
+          * Chain of the Dependency --- Path linking two entities
+          *     0: Sequence of Words
+          *     1: Sequence of Part-of-Speechs
+          *     2: Sequence of Grammatical Relations
+          */
+        encoder.append(instance.sequences);
+        if (instance.foldSequences != null)
+            encoder.append(instance.foldSequences[n_fold]);
+        else
+            encodeDependencySequences(encoder, relation);
+
+        encoder.append(' ').append(instance.features);
+    }
+
+    /**
+     * Encode the sequences of the dependency path of a relation instance:
+     * its words, its grammatical relations and its constituents.
+     */
+    private void encodeDependencySequences(KernelLineEncoder encoder, Relation relation) {
+        RECKDPTreeNodeImpl DPTree = (RECKDPTreeNodeImpl)relation.getRelationTree().get(1);
+        List DP_SK = TreeUtils.getDependencyPath(DPTree);
+        int k;
+
+        // Dependency --- 0: Sequence of Words
+        encoder.append(' ').append(RECKConstants.begin_tree).append(" (FAKEROOT");
+        for (k = 0; k < DP_SK.size(); k++) {
+            RECKDPTreeNodeImpl dp = (RECKDPTreeNodeImpl)DP_SK.get(k);
+            encoder.append(" (").append(dp.label().toString()).append(')');
         }
-        catch (java.io.IOException ioEx) {
-            ioEx.printStackTrace();
+        encoder.append(')');
+
+        // Dependency --- 1: Sequence of Grammatical Relations
+        encoder.append(' ').append(RECKConstants.begin_tree).append(" (FAKEROOT");
+        for (k = 0; k < DP_SK.size(); k++) {
+            RECKDPTreeNodeImpl dp = (RECKDPTreeNodeImpl)DP_SK.get(k);
+            if ( (dp.role() == null) || (dp.role().trim().equals("")) )
+                encoder.append(" (").append(dp.label().toString()).append(')');
+            else
+                encoder.append(" (").append(dp.role()).append(')');
         }
-    } // writeToKernelFile_All ___ with n folds
+        encoder.append(')');
+
+        // Dependency --- 2: Sequence of Constituents
+        encoder.append(' ').append(RECKConstants.begin_tree).append(" (FAKEROOT");
+        for (k = 0; k < DP_SK.size(); k++) {
+            RECKDPTreeNodeImpl dp = (RECKDPTreeNodeImpl)DP_SK.get(k);
+            if ( (dp.constituent() == null) || (dp.constituent().trim().equals("")) )
+                encoder.append(" (").append(dp.label().toString()).append(')');
+            else
+                encoder.append(" (").append(dp.constituent()).append(')');
+        }
+        encoder.append(')');
+    }
 
     /**
-     * read documents from serialized files,
-     * and print out statistics
+     * Get the parts of the line of a relation instance which are the same
+     * in all folds, encoding them the first time.
      */
-    public void readFromSerializedFile(String inputFilename) {
-        SortedFile df = new SortedFile(inputFilename);
-        DocumentImpl doc = null;
+    private KernelInstance getKernelInstance(Relation relation, boolean all) {
+        if (kernelInstances == null)
+            kernelInstances = new IdentityHashMap();
+        KernelInstance instance = (KernelInstance)kernelInstances.get(relation);
+        if (instance == null || (all && instance.sequences == null)) {
+            instance = encodeKernelInstance(relation, all);
+            kernelInstances.put(relation, instance);
+        }
+        return instance;
+    }
 
-        try {
-            if (df.isDirectory()) {
-                clear();
-                ReckFilenameFilter annotated_filter = new ReckFilenameFilter(".document");
-                File[] fs_annotated = df.listFiles(annotated_filter);
-                for (int i = 0; i < fs_annotated.length; i++) {
-                    doc = (DocumentImpl)RECKConstants.readFromFile(fs_annotated[i].getCanonicalPath());
+    /**
+     * Encode the parts of the line of a relation instance
+     * which are the same in all folds.
+     */
+    private KernelInstance encodeKernelInstance(Relation relation, boolean all) {
+        KernelInstance instance = new KernelInstance();
+        KernelLineEncoder encoder = new KernelLineEncoder();
+        ArrayList treeList = relation.getRelationTree();
+        Mention mention1 = relation.getMention(0);
+        Mention mention2 = relation.getMention(1);
+
+        instance.trees = new byte[treeList.size()][];
+        for (int k = 0; k < treeList.size(); k++) {
+            Object o = treeList.get(k);
+            if (o instanceof RECKCTTreeNodeImpl)
+                instance.trees[k] = encoder.reset().append(RECKConstants.begin_tree).append(' ')
+                        .appendTree((Tree)o).append(' ').toByteArray();
+        }
+
+        if (all) {
+            encodeSequences(encoder.reset(), relation);
+            instance.sequences = encoder.toByteArray();
+        }
+
+        encoder.reset().append(RECKConstants.end_tree);
+        encodeFeatures(encoder, mention1);
+        encoder.append(' ').append(RECKConstants.begin_vector);
+        encodeFeatures(encoder, mention2);
+        encoder.append(' ').append(RECKConstants.end_vector);
+        instance.features = encoder.toByteArray();
+
+        return instance;
+    }
+
+    /**
+     * Encode the sequences of the constituent tree of a relation instance:
+     * its words, its preterminals and its grammatical relations.
+     */
+    private void encodeSequences(KernelLineEncoder encoder, Relation relation) {
+        Mention mention1 = relation.getMention(0);
+        Entity entity1 = mention1.getEntity();
+        Mention mention2 = relation.getMention(1);
+        Entity entity2 = mention2.getEntity();
+        int k;
+
+        RECKCTTreeNodeImpl CTTree = (RECKCTTreeNodeImpl)relation.getRelationTree().get(0);
+        List CT_SK = CTTree.getLeaves();
+        List CT_PT = TreeUtils.getPreterminals(CTTree);
+        int markCT = -1;
+        
+        String t1 = "(T1-", t2 = "(T2-";
+        if (RECKConstants.mentionOrder(mention1, mention2)) {
+            t1 += entity1.getType() + ")";
+            t2 += entity2.getType() + ")";
+        }
+        else {
+            t2 += entity1.getType() + ")";
+            t1 += entity2.getType() + ")";
+        }
+        if (mention1.getHwPosition().getStart().intValue() > mention2.getHwPosition().getStart().intValue()) {
+            String tmp = t1;
+            t1 = t2;
+            t2 = tmp;
+        }
+
+        for (k = 0; k < CT_SK.size(); k++) {
+            if (((RECKCTTreeNodeImpl)CT_SK.get(k)).getPosition().getStart().intValue() 
+                    == mention2.getHwPosition().getStart().intValue()) {
+                markCT = k;
+                break;
+            }
+        }
+
+        // Constituent --- 0: Sequence of Words
+        encoder.append(RECKConstants.begin_tree).append(" (FAKEROOT ").append(t1);
+        for (k = 0; k < CT_SK.size(); k++) {
+            if (k == markCT) encoder.append(' ').append(t2);
+            encoder.append(" (").append(((RECKCTTreeNodeImpl)CT_SK.get(k)).label().toString()).append(')');
+        }
+        encoder.append(')');
+        
+        // Constituent --- 1: Sequence of Preterminals
+        encoder.append(' ').append(RECKConstants.begin_tree).append(" (FAKEROOT ").append(t1);
+        for (k = 0; k < CT_SK.size(); k++) {
+            if (k == markCT) encoder.append(' ').append(t2);
+            encoder.append(" (").append(((RECKCTTreeNodeImpl)CT_PT.get(k)).label().toString()).append(')');
+        }
+        encoder.append(')');
+        
+        // Constituent --- 2: Sequence of Grammatical Relations
+        ArrayList GRs = TreeUtils.getDependencyList(relation.getRECKParseTree(), CTTree);
+        if (GRs.size() != CT_SK.size())
+            System.err.println("Error ...");
+        encoder.append(' ').append(RECKConstants.begin_tree).append(" (FAKEROOT ").append(t1);
+        for (k = 0; k < GRs.size(); k++) {
+            if (k == markCT) encoder.append(' ').append(t2);
+            encoder.append(" (").append((String)GRs.get(k)).append(')');
+        }
+        encoder.append(')');
+    }
+
+    /**
+     * Encode the features of an entity mention, with values 2 for
+     * the entity type and 1 for the others.
+     */
+    private void encodeFeatures(KernelLineEncoder encoder, Mention mention) {
+        Entity entity = mention.getEntity();
+
+        int index1 = RECKConstants.entityTypeDictionary.size();
+        int index2 = index1 + RECKConstants.entitySubTypeDictionary.size();
+        int index3 = index2 + RECKConstants.mentionTypeDictionary.size();
+        int index4 = index3 + RECKConstants.mentionLDCTypeDictionary.size();
+        int index5 = index4 + RECKConstants.mentionRoleDictionary.size();
+        int index6 = index5 + RECKConstants.mentionReferenceDictionary.size();
+
+        int i1 = RECKConstants.entityTypeDictionary.indexOf(entity.getType()) + 1;
+        int i2 = index1 + RECKConstants.entitySubTypeDictionary.indexOf(entity.getSubType()) + 2;
+        int i3 = index2 + RECKConstants.mentionTypeDictionary.indexOf(mention.getType()) + 3;
+        int i4 = index3 + RECKConstants.mentionLDCTypeDictionary.indexOf(mention.getLDCType()) + 4;
+        int i5 = index4 + RECKConstants.mentionRoleDictionary.indexOf(mention.getRole()) + 5;
+        int i6 = index5 + RECKConstants.mentionReferenceDictionary.indexOf(mention.getReference()) + 6;
+        int i7 = index6 + headwords.indexOf(RECKConstants.trimReturn(mention.getHeadword()).toLowerCase()) + 7;
+        
+        if (i1 > 0) encoder.appendFeature(i1, 2);
+        if (i2 > 0) encoder.appendFeature(i2, 1);
+        if (i3 > 0) encoder.appendFeature(i3, 1);
+        if (i4 > 0) encoder.appendFeature(i4, 1);
+        if (i5 > 0) encoder.appendFeature(i5, 1);
+        if (i6 > 0) encoder.appendFeature(i6, 1);
+        if (i7 > 0) encoder.appendFeature(i7, 1);
+    }
+
+    /**
+     * The parts of the line of a relation instance which are the same
+     * in all folds.
+     */
+    static class KernelInstance {
+        /** The constituent trees, null for the dependency trees */
+        byte[][] trees = null;
+        /** The sequences of the constituent tree */
+        byte[] sequences = null;
+        /** The feature vectors, from |ET| on */
+        byte[] features = null;
+        /** The dependency trees of each fold, when the folds are written in parallel */
+        byte[][][] foldTrees = null;
+        /** The sequences of the dependency path of each fold */
+        byte[][] foldSequences = null;
+    }
+
+    /**
+     * The relation instances encoded by a task, from the index start on,
+     * or the end of the instances when null.
+     */
+    static class KernelBatch {
+        int start = 0;
+        KernelInstance[] instances = null;
+    }
+
+    /**
+     * The open training/test files of a fold.
+     */
+    static class FoldFiles {
+        /** The files of each relation type */
+        ArrayList trainingList = new ArrayList(), testList = new ArrayList();
+        /** The files of the instances shared by relation types, or null */
+        BufferedOutputStream shared_train = null, shared_test = null;
+        BufferedWriter gold_train = null, gold_test = null, mark_train = null, mark_test = null;
+        
+        void close() throws java.io.IOException {
+            for (int i = 0; i < trainingList.size(); i++) {
+                ((BufferedOutputStream)trainingList.get(i)).close();
+                ((BufferedOutputStream)testList.get(i)).close();
+            }
+            if (shared_train != null) {
+                shared_train.close();
+                shared_test.close();
+            }
+            gold_train.close();
+            gold_test.close();
+            mark_train.close();
+            mark_test.close();
+        }
+    }
+
+    /**
+     * read documents from serialized files,
+     * and print out statistics
+     */
+    public void readFromSerializedFile(String inputFilename) {
+        SortedFile df = new SortedFile(inputFilename);
+        DocumentImpl doc = null;
+
+        try {
+            if (CorpusStore.isStoreFile(inputFilename)) {
+                // documents are decoded only when they are accessed
+                CorpusStore store = new CorpusStore(inputFilename);
+                documentList = store;
+                readOnly = true;
+                for (int i = 0; i < store.size(); i++) {
+                    nbr_entities += store.getNbrEntities(i);
+                    nbr_relations += store.getNbrRelations(i);
+                    Statistics.nbr_documents++;
+                    Statistics.nbr_entities += store.getNbrEntities(i);
+                    Statistics.nbr_mentions += store.getNbrMentions(i);
+                    Statistics.nbr_relations += store.getNbrRelations(i);
+                }
+            }
+            else if (df.isDirectory()) {
+                // a store read before is replaced, not cleared
+                documentList = new ArrayList();
+                readOnly = false;
+                ReckFilenameFilter annotated_filter = new ReckFilenameFilter(".document");
+                File[] fs_annotated = df.listFiles(annotated_filter);
+                List readList = null;
+                if (reckParams != null && reckParams.nbthreads > 1)
+                    readList = readDocuments(fs_annotated, reckParams.nbthreads);
+                
+                // documents are added in the sorted order of their files
+                for (int i = 0; i < fs_annotated.length; i++) {
+                    if (readList != null)
+                        doc = (DocumentImpl)readList.get(i);
+                    else
+                        doc = DocumentFormat.readFromFile(fs_annotated[i].getCanonicalPath());
                     add(doc);
                     relationListACE.addAll(doc.getRelations());
                     nbr_entities += doc.getEntities().size();
                     nbr_relations += doc.getRelations().size();
-                    Statistics.nbr_documents++;
-                    Statistics.nbr_entities += doc.getEntities().size();
-                    Statistics.nbr_mentions += doc.getMentions().size();
-                    Statistics.nbr_relations += doc.getRelations().size();
+                    synchronized (Statistics.class) {
+                        Statistics.nbr_documents++;
+                        Statistics.nbr_entities += doc.getEntities().size();
+                        Statistics.nbr_mentions += doc.getMentions().size();
+                        Statistics.nbr_relations += doc.getRelations().size();
+                    }
                 }
             }
             else {
-                doc = (DocumentImpl)RECKConstants.readFromFile(inputFilename);
+                doc = DocumentFormat.readFromFile(inputFilename);
                 add(doc);
                 relationListACE.addAll(doc.getRelations());
                 nbr_entities += doc.getEntities().size();
@@ -1194,6 +1175,453 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
         System.out.println("nbr_relations = " + Statistics.nbr_relations);
     } // readFromSerializedFile
 
+    /**
+     * Read serialized files with several threads.
+     * @param fs_annotated the serialized files
+     * @param nbthreads    the number of worker threads
+     * @return the documents, in the same order as the serialized files
+     */
+    public List readDocuments(File[] fs_annotated, int nbthreads) 
+            throws java.io.IOException, ClassNotFoundException {
+        ExecutorService executor = Executors.newFixedThreadPool(nbthreads);
+        ArrayList futureList = new ArrayList();
+        ArrayList readList = new ArrayList();
+        
+        for (int i = 0; i < fs_annotated.length; i++) {
+            final File fs = fs_annotated[i];
+            futureList.add(executor.submit(new Callable() {
+                public Object call() throws Exception {
+                    return DocumentFormat.readFromFile(fs.getCanonicalPath());
+                }
+            }));
+        }
+        
+        try {
+            for (int i = 0; i < futureList.size(); i++)
+                readList.add(((Future)futureList.get(i)).get());
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new java.io.IOException("Interrupted while reading documents");
+        }
+        catch (ExecutionException exeEx) {
+            if (exeEx.getCause() instanceof ClassNotFoundException)
+                throw (ClassNotFoundException)exeEx.getCause();
+            exeEx.getCause().printStackTrace();
+            throw new java.io.IOException("Failed to read documents: " + exeEx.getCause());
+        }
+        finally {
+            executor.shutdownNow();
+        }
+        
+        return readList;
+    }
+
+    /**
+     * Convert serialized files, written with Java serialization or
+     * in the binary format, to files in the compact binary format
+     */
+    public void convertSerializedFiles(String inputFilename, String outputFilename) {
+        SortedFile df = new SortedFile(inputFilename);
+        File[] fs_annotated = null;
+        File outputFolder = new File(outputFilename);
+
+        if (df.isDirectory())
+            fs_annotated = df.listFiles(new ReckFilenameFilter(".document"));
+        else
+            fs_annotated = new File[] {df};
+        
+        try {
+            for (int i = 0; i < fs_annotated.length; i++) {
+                DocumentImpl doc = DocumentFormat.readFromFile(fs_annotated[i].getCanonicalPath());
+                File outputFile = outputFolder.isDirectory() 
+                        ? new File(outputFolder, fs_annotated[i].getName()) : outputFolder;
+                DocumentFormat.writeToFile(doc, outputFile.getPath());
+                System.out.println("Converted " + fs_annotated[i].getName());
+            }
+        }
+        catch (java.lang.ClassNotFoundException classEx) {
+            classEx.printStackTrace();
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+    } // convertSerializedFiles
+
+    /**
+     * Pack serialized files into one corpus store
+     */
+    public void writeToStore(String inputFilename, String outputFilename) {
+        SortedFile df = new SortedFile(inputFilename);
+        File[] fs_annotated = null;
+
+        if (df.isDirectory())
+            fs_annotated = df.listFiles(new ReckFilenameFilter(".document"));
+        else
+            fs_annotated = new File[] {df};
+        
+        try {
+            CorpusStore.writeStore(fs_annotated, outputFilename);
+            System.out.println(fs_annotated.length + " documents written to " + outputFilename);
+        }
+        catch (java.lang.ClassNotFoundException classEx) {
+            classEx.printStackTrace();
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+    } // writeToStore
+
+    /**
+     * Expand learning files written with shared instances: from a folder
+     * written in mode 3, all the label files of all folds, or a single
+     * label file, for instance to a named pipe read by SVM-light-TK.
+     */
+    public void expandKernelFiles(String inputFilename, String outputFilename) {
+        File df = new File(inputFilename);
+        
+        try {
+            if (!df.isDirectory()) {
+                expandKernelFile(df, new File(outputFilename));
+                return;
+            }
+            
+            File[] folds = df.listFiles();
+            Arrays.sort(folds);
+            for (int i = 0; i < folds.length; i++) {
+                if (!folds[i].isDirectory())
+                    continue;
+                File[] labelFiles = folds[i].listFiles(new ReckFilenameFilter(LABELS_SUFFIX));
+                if (labelFiles.length == 0)
+                    continue;
+                
+                File outputFolder = new File(outputFilename, folds[i].getName());
+                outputFolder.mkdirs();
+                for (int j = 0; j < labelFiles.length; j++) {
+                    String name = labelFiles[j].getName();
+                    expandKernelFile(labelFiles[j], 
+                            new File(outputFolder, name.substring(0, name.length() - LABELS_SUFFIX.length())));
+                }
+                System.out.println("Expanded fold " + folds[i].getName());
+            }
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+    } // expandKernelFiles
+
+    /**
+     * Expand a label file, i.train.labels or i.test.labels, with the instances
+     * of train.kernel or test.kernel next to it, to a learning file of SVM-light-TK.
+     */
+    public static void expandKernelFile(File labelFile, File outputFile) throws java.io.IOException {
+        String name = labelFile.getName();
+        String set = name.substring(name.indexOf('.') + 1, name.length() - LABELS_SUFFIX.length());
+        File sharedFile = new File(labelFile.getParentFile(), set + SHARED_SUFFIX);
+        
+        BufferedReader labels = new BufferedReader(new InputStreamReader(new FileInputStream(labelFile)));
+        FileInputStream instances = new FileInputStream(sharedFile);
+        BufferedOutputStream out = new BufferedOutputStream(
+                new FileOutputStream(outputFile), RECKConstants.INTERNAL_BUFFER_SIZE);
+        try {
+            byte[] buffer = new byte[RECKConstants.INTERNAL_BUFFER_SIZE];
+            int start = 0, end = 0;
+            String label;
+            while ((label = labels.readLine()) != null) {
+                out.write(label.getBytes());
+                out.write(' ');
+                // copy the line of the instance, with its line separator
+                boolean endOfLine = false;
+                while (!endOfLine) {
+                    if (start == end) {
+                        start = 0;
+                        end = instances.read(buffer);
+                        if (end == -1)
+                            throw new java.io.IOException("Missing instances in " + sharedFile);
+                    }
+                    int k = start;
+                    while (k < end && buffer[k] != '\n')
+                        k++;
+                    endOfLine = (k < end);
+                    if (endOfLine)
+                        k++;
+                    out.write(buffer, start, k - start);
+                    start = k;
+                }
+            }
+        }
+        finally {
+            labels.close();
+            instances.close();
+            out.close();
+        }
+    }
+
+    /**
+     * Compute once the kernels of all pairs of the instances of the folds
+     * written in mode 3, a fold folder or all the folds of a folder, with
+     * the composite kernel of the option -r, and write them to the file 
+     * outputFilename. The instances found in several folds, as training
+     * instances of some and test instances of another, are kept once.
+     */
+    public void computeGramMatrix(String inputFilename, String outputFilename) {
+        try {
+            TreeKernelEngine engine = getTreeKernelEngine();
+            File[] folds = getFoldFolders(new File(inputFilename));
+            FeatureDictionary instances = new FeatureDictionary();
+            for (int i = 0; i < folds.length; i++) {
+                ArrayList trainingList = readFoldInstances(folds[i], "train");
+                ArrayList testList = readFoldInstances(folds[i], "test");
+                for (int k = 0; trainingList != null && k < trainingList.size(); k++)
+                    instances.add((String)trainingList.get(k));
+                for (int k = 0; testList != null && k < testList.size(); k++)
+                    instances.add((String)testList.get(k));
+            }
+            
+            ArrayList instanceList = new ArrayList();
+            for (int k = 0; k < instances.size(); k++)
+                instanceList.add(instances.get(k));
+            System.out.println("Computing the kernels of " + instanceList.size() + " instances of " 
+                    + folds.length + " folds: " + GramMatrix.nbrPairs(instanceList.size()) + " pairs");
+            GramMatrix.compute(engine, instanceList, outputFilename, reckParams.nbthreads);
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+    } // computeGramMatrix
+
+    /**
+     * Train the classifier of each relation type i on the training files
+     * of the folds written in mode 3, a fold folder or all the folds of a
+     * folder, and classify their test instances, reading all the kernels in
+     * the matrix outputFilename written in mode 9. The models are written to
+     * i.model and the predictions to i.out in the fold, to be read in mode 4.
+     * <p>
+     * The kernels are those of the Java engine, which replaces svm_learn and
+     * svm_classify only if its predictions are those of svm_classify on the
+     * instances of learning/fixtures, see <code>KernelCheck</code>.
+     */
+    public void trainAndClassifyFolds(String inputFilename, String outputFilename) {
+        try {
+            int composite = (reckParams.tree_type == 0) ? TreeKernelEngine.CK1 : TreeKernelEngine.CK1_SSK;
+            if (!KernelCheck.checkFixtures(KernelCheck.FIXTURES_FOLDER, reckParams.treeKernelParamFilename, 
+                    composite, reckParams.kernelNormalization)) {
+                System.err.println("The Java kernels are not checked against SVM-light-TK, "
+                        + "train and classify with svm_learn and svm_classify");
+                return;
+            }
+            
+            final TreeKernelEngine engine = getTreeKernelEngine();
+            final GramMatrix gram = new GramMatrix(outputFilename);
+            if (!gram.matches(engine)) {
+                System.err.println("The kernel matrix " + outputFilename 
+                        + " is not the one of the kernel, compute it again in mode 9");
+                return;
+            }
+            
+            ArrayList tasks = new ArrayList();
+            File[] folds = getFoldFolders(new File(inputFilename));
+            for (int i = 0; i < folds.length; i++) {
+                final File fold = folds[i];
+                final int[] trainingRows = getFoldRows(gram, fold, "train");
+                final int[] testRows = getFoldRows(gram, fold, "test");
+                if (trainingRows == null || testRows == null)
+                    continue;
+                
+                for (int j = 0; j < RECKConstants.relationTypes.size(); j++) {
+                    final int type = j;
+                    final double[] labels = readFoldLabels(fold, "train", type);
+                    if (labels == null)
+                        continue;
+                    tasks.add(new Callable() {
+                        public Object call() throws Exception {
+                            trainAndClassify(engine, gram, fold, type, trainingRows, labels, testRows);
+                            return null;
+                        }
+                    });
+                }
+            }
+            
+            ForkJoinPool pool = new ForkJoinPool(Math.max(reckParams.nbthreads, 1));
+            try {
+                List futureList = pool.invokeAll(tasks);
+                for (int i = 0; i < futureList.size(); i++)
+                    ((Future)futureList.get(i)).get();
+            }
+            catch (InterruptedException intEx) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while training the classifiers", intEx);
+            }
+            catch (ExecutionException exeEx) {
+                if (exeEx.getCause() instanceof java.io.IOException)
+                    throw (java.io.IOException)exeEx.getCause();
+                if (exeEx.getCause() instanceof Error)
+                    throw (Error)exeEx.getCause();
+                throw new RuntimeException("Failed to train the classifiers", exeEx.getCause());
+            }
+            finally {
+                pool.shutdown();
+            }
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+    } // trainAndClassifyFolds
+
+    /**
+     * Train the classifier of a relation type on the training instances of
+     * a fold, and write its model and its predictions on the test instances.
+     */
+    private void trainAndClassify(TreeKernelEngine engine, GramMatrix gram, File fold, int type,
+            int[] trainingRows, double[] labels, int[] testRows) throws java.io.IOException {
+        KernelTrainer trainer = new KernelTrainer(gram, trainingRows, labels);
+        trainer.setCost(reckParams.svmCost);
+        KernelModel model = trainer.train(engine);
+        model.write(new File(fold, type + ".model").getPath());
+        
+        int[] rows = model.findRows(gram);
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(fold, type + ".out"))));
+        try {
+            for (int k = 0; k < testRows.length; k++) {
+                writer.write(Double.toString(model.classify(gram, rows, testRows[k])));
+                writer.newLine();
+            }
+        }
+        finally {
+            writer.close();
+        }
+        System.out.println("Trained fold " + fold.getName() + ", relation type " + type + ": " 
+                + trainingRows.length + " instances, " + model.getNbrSupportVectors() + " support vectors, " 
+                + trainer.getNbrIterations() + " iterations");
+    }
+
+    /**
+     * The kernel engine of the composite kernel of the option -r, with the
+     * tree kernels of the option -k and the normalization of the option -N.
+     */
+    private TreeKernelEngine getTreeKernelEngine() throws java.io.IOException {
+        int composite = (reckParams.tree_type == 0) ? TreeKernelEngine.CK1 : TreeKernelEngine.CK1_SSK;
+        return new TreeKernelEngine(reckParams.treeKernelParamFilename, composite, reckParams.kernelNormalization);
+    }
+
+    /**
+     * The folders of the folds written in mode 3, the folder itself if it
+     * holds learning files, its sub-folders otherwise.
+     */
+    private static File[] getFoldFolders(File df) {
+        if (getFoldInstancesFile(df, "train") != null)
+            return new File[] {df};
+        
+        ArrayList foldList = new ArrayList();
+        File[] fs = df.listFiles();
+        for (int i = 0; fs != null && i < fs.length; i++) {
+            if (fs[i].isDirectory())
+                foldList.add(fs[i]);
+        }
+        File[] folds = (File[])foldList.toArray(new File[foldList.size()]);
+        Arrays.sort(folds);
+        return folds;
+    }
+
+    /**
+     * The file of the training or test instances of a fold, train.kernel or
+     * test.kernel with shared instances, or the file of relation type 0,
+     * since the files of all relation types hold the same instances in the 
+     * same order. Returns <code>null</code> if there is none.
+     */
+    private static File getFoldInstancesFile(File fold, String set) {
+        File f = new File(fold, set + SHARED_SUFFIX);
+        if (f.exists())
+            return f;
+        f = new File(fold, "0." + set);
+        return f.exists() ? f : null;
+    }
+
+    /**
+     * The rows of the training or test instances of a fold in a matrix.
+     * Returns <code>null</code> if the fold has no such file, or if an 
+     * instance is not in the matrix.
+     */
+    private static int[] getFoldRows(GramMatrix gram, File fold, String set) throws java.io.IOException {
+        ArrayList instanceList = readFoldInstances(fold, set);
+        if (instanceList == null)
+            return null;
+        int[] rows = new int[instanceList.size()];
+        for (int k = 0; k < rows.length; k++) {
+            rows[k] = gram.indexOf((String)instanceList.get(k));
+            if (rows[k] == -1) {
+                System.err.println("The " + set + " instances of fold " + fold.getName() 
+                        + " are not in the kernel matrix, compute it again in mode 9");
+                return null;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Read the labels of the training or test instances of a fold for a
+     * relation type, in i.train.labels with shared instances or in i.train.
+     * Returns <code>null</code> if the fold has no such file.
+     */
+    private static double[] readFoldLabels(File fold, String set, int type) throws java.io.IOException {
+        File f = new File(fold, type + "." + set + LABELS_SUFFIX);
+        if (!f.exists())
+            f = new File(fold, type + "." + set);
+        if (!f.exists())
+            return null;
+        
+        ArrayList labelList = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(f)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() == 0)
+                    continue;
+                int end = 0;
+                while (end < line.length() && !Character.isWhitespace(line.charAt(end)))
+                    end++;
+                labelList.add(Double.valueOf(line.substring(0, end)));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        
+        double[] labels = new double[labelList.size()];
+        for (int k = 0; k < labels.length; k++)
+            labels[k] = ((Double)labelList.get(k)).doubleValue();
+        return labels;
+    }
+
+    /**
+     * Read the training or test instances of a fold, without their labels, 
+     * as in <code>GramMatrix.instanceOf</code>.
+     * Returns <code>null</code> if the fold has no such file.
+     */
+    private static ArrayList readFoldInstances(File fold, String set) throws java.io.IOException {
+        File f = getFoldInstancesFile(fold, set);
+        if (f == null)
+            return null;
+        // the lines of shared instances have no label
+        String label = f.getName().endsWith(SHARED_SUFFIX) ? "0 " : "";
+        
+        ArrayList instanceList = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(f)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0)
+                    instanceList.add(GramMatrix.instanceOf(label + line));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return instanceList;
+    }
+
     /**
      * Construct a list of entity head words
      */
@@ -1204,8 +1632,7 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
             while (mentionIter.hasNext()) {
                 Mention mention = (Mention)mentionIter.next();
                 String st = RECKConstants.trimReturn(mention.getHeadword()).toLowerCase();
-                if (headwords.indexOf(st) == -1) 
-                    headwords.add(st);
+                headwords.add(st);
             }
         }
     } // constructHeadwordDictionary
@@ -1214,20 +1641,20 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * Sort entity mentions according to their positions in the document.
      */
     public ArrayList sortEntityList(ArrayList entityList) {
-        ArrayList newList = new ArrayList();
-        for (int i = 0; i < entityList.size(); i++) {
-            long start = ((Mention)entityList.get(i)).getHwPosition().getStart().longValue(),
-                   end = ((Mention)entityList.get(i)).getHwPosition().getEnd().longValue();
-            int j = 0;
-            while ( (j < i) && ((start > ((Mention)newList.get(j)).getHwPosition().getStart().longValue())
-                    || ((start == ((Mention)newList.get(j)).getHwPosition().getStart().longValue()) 
-                    && (end > ((Mention)newList.get(j)).getHwPosition().getEnd().longValue()))))
-                j++;
-            if (j == i)
-                newList.add(entityList.get(i));
-            else
-                newList.add(j, entityList.get(i));
+        int n = entityList.size();
+        long[] starts = new long[n], ends = new long[n];
+        for (int i = 0; i < n; i++) {
+            Charseq position = ((Mention)entityList.get(i)).getHwPosition();
+            starts[i] = position.getStart().longValue();
+            ends[i] = position.getEnd().longValue();
         }
+        
+        // same order as inserting the mentions one by one before the first
+        // not lower, a mention coming before the equal ones met earlier
+        int[] order = RECKConstants.sortByOffsets(starts, ends);
+        ArrayList newList = new ArrayList(n);
+        for (int i = 0; i < n; i++)
+            newList.add(entityList.get(order[i]));
         return newList;
     }
 
@@ -1237,10 +1664,17 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
      * in each document
      */
     public void generatePossibleRelations() {
-        int length_tree_size = 0;
-        RECKDPTreeNodeImpl dpTree = null;
         int ifold = 0, currentSize = 0;
         
+        // a candidate is identified by its document, sentence and mention pair,
+        // which its mark holds; a gold relation is only met for one sentence
+        HashSet generatedMarks = new HashSet(markDocumentList);
+        
+        // documents are processed in parallel, then merged in document order
+        List candidatesList = null;
+        if (reckParams != null && reckParams.nbthreads > 1 && size() > 1)
+            candidatesList = generateCandidatesInParallel(generatedMarks, reckParams.nbthreads);
+        
         // number of possible relations
         for (int i = 0; i < size(); i++) {
             if (currentSize < nfold[ifold]) {
@@ -1250,131 +1684,393 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
                 ifold++;
                 currentSize = 0;
             }
-            Document doc = (Document)get(i);
-            ArrayList treeList = doc.getTreeList();
-            for (int j = 0; j < treeList.size(); j++) {
-                RECKParseTreeImpl rpTree = (RECKParseTreeImpl)treeList.get(j);
-                
-                if (rpTree.getDependencyList().size() > 0) {
-                
-                    ArrayList entityList = new ArrayList(rpTree.getDPEntityTrees().keySet());
-                    entityList = sortEntityList(entityList);
-                    for (int k = 0; k < entityList.size() - 1; k++) {
-                        for (int l = k+1; l < entityList.size(); l++) {
-                            Mention mention1 = (Mention)entityList.get(k);
-                            Mention mention2 = (Mention)entityList.get(l);
-                            String mark = "D" + i + "-S" + j + "-M1_" + mention1.getId() + "-M2_" + mention2.getId();
-
-                            String entityId1 = mention1.getEntity().getId();
-                            String entityId2 = mention2.getEntity().getId();
-
-                            if (!entityId1.equals(entityId2)) {
-                                if (!RECKConstants.mentionOrder(mention1, mention2)) {
-                                    Mention tm = mention1;
-                                    mention1 = mention2;
-                                    mention2 = tm;
-                                }
+            DocumentCandidates candidates = (candidatesList != null) 
+                    ? (DocumentCandidates)candidatesList.get(i)
+                    : generateCandidates(i, (Document)get(i), generatedMarks);
+            nbr_avail_rels += candidates.nbr_avail_rels;
+            nbr_none_rels += candidates.nbr_none_rels;
+            
+            for (int k = 0; k < candidates.relations.size(); k++) {
+                String mark = (String)candidates.marks.get(k);
+                Relation relation = (Relation)candidates.relations.get(k);
+                generatedMarks.add(mark);
+                possibleRelationList.add(relation);
+                markDocumentList.add(mark);
+                foldRelationList[ifold].add(relation);
+                markFoldList[ifold].add(mark);
+            }
+        }
+        nbr_relations = Statistics.nbr_relations = possibleRelationList.size();
+        System.out.println("Generation completed");
+        System.out.println("Number of all relations = " + Statistics.nbr_relations);
+        System.out.println("Number of available relations =  = " + nbr_avail_rels);
+        System.out.println("Number of negative relations = " + nbr_none_rels);
+    }
+    
+    /**
+     * Generate the potential relation instances of the documents 
+     * on a work-stealing pool.
+     * @param generatedMarks the marks of the relations already generated,
+     *                       only read by the workers
+     * @param nbthreads      the number of worker threads
+     * @return the candidates of each document, in document order
+     */
+    public List generateCandidatesInParallel(final Set generatedMarks, int nbthreads) {
+        ForkJoinPool pool = new ForkJoinPool(nbthreads);
+        ArrayList tasks = new ArrayList();
+        ArrayList candidatesList = new ArrayList();
+        
+        for (int i = 0; i < size(); i++) {
+            final int docIndex = i;
+            tasks.add(new Callable() {
+                public Object call() throws Exception {
+                    return generateCandidates(docIndex, (Document)get(docIndex), generatedMarks);
+                }
+            });
+        }
+        
+        try {
+            List futureList = pool.invokeAll(tasks);
+            for (int i = 0; i < futureList.size(); i++)
+                candidatesList.add(((Future)futureList.get(i)).get());
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while generating relations");
+        }
+        catch (ExecutionException exeEx) {
+            if (exeEx.getCause() instanceof RuntimeException)
+                throw (RuntimeException)exeEx.getCause();
+            if (exeEx.getCause() instanceof Error)
+                throw (Error)exeEx.getCause();
+            throw new RuntimeException(exeEx.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+        
+        return candidatesList;
+    }
+    
+    /**
+     * Generate the potential relation instances of one document
+     * by iterating all pairs of entity mentions in each sentence.
+     * Only the trees of the relations are modified, so that documents
+     * can be processed concurrently.
+     * @param i              the index of the document
+     * @param doc            the document
+     * @param generatedMarks the marks of the relations already generated
+     */
+    public DocumentCandidates generateCandidates(int i, Document doc, Set generatedMarks) {
+        DocumentCandidates candidates = new DocumentCandidates();
+        HashSet docMarks = new HashSet();
+        RECKDPTreeNodeImpl dpTree = null;
+        
+        ArrayList treeList = doc.getTreeList();
+        for (int j = 0; j < treeList.size(); j++) {
+            RECKParseTreeImpl rpTree = (RECKParseTreeImpl)treeList.get(j);
+
+            if (rpTree.getDependencyList().size() > 0) {
+
+                ArrayList entityList = new ArrayList(rpTree.getDPEntityTrees().keySet());
+                entityList = sortEntityList(entityList);
+                for (int k = 0; k < entityList.size() - 1; k++) {
+                    for (int l = k+1; l < entityList.size(); l++) {
+                        Mention mention1 = (Mention)entityList.get(k);
+                        Mention mention2 = (Mention)entityList.get(l);
+                        String mark = "D" + i + "-S" + j + "-M1_" + mention1.getId() + "-M2_" + mention2.getId();
+
+                        String entityId1 = mention1.getEntity().getId();
+                        String entityId2 = mention2.getEntity().getId();
+
+                        if (!entityId1.equals(entityId2)) {
+                            if (!RECKConstants.mentionOrder(mention1, mention2)) {
+                                Mention tm = mention1;
+                                mention1 = mention2;
+                                mention2 = tm;
+                            }
 
-                                Relation relation = doc.getRelations().getRelationByMentions(mention1, mention2);
-                                ArrayList relationTreeList = new ArrayList();
+                            Relation relation = doc.getRelations().getRelationByMentions(mention1, mention2);
+                            ArrayList relationTreeList = new ArrayList();
 
-                                switch (RECKParameters.getRECKParameters().tree_type) {
+                            switch (RECKParameters.getRECKParameters().tree_type) {
 
-                                    case 0:
-                                        relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
-                                        break;
+                                case 0:
+                                    relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
+                                    break;
 
-                                    case 1:
-                                        relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
-                                        dpTree = TreeUtils.buildDependencyPT(rpTree, mention1, mention2);
+                                case 1:
+                                    relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
+                                    dpTree = TreeUtils.buildDependencyPT(rpTree, mention1, mention2);
 
-                                        if (dpTree == null)
-                                            relationTreeList = null;
-                                        else
-                                            relationTreeList.add(dpTree);
+                                    if (dpTree == null)
+                                        relationTreeList = null;
+                                    else
+                                        relationTreeList.add(dpTree);
 
-                                        break;
+                                    break;
 
-                                    default:
-                                        relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
-                                }
+                                default:
+                                    relationTreeList.add(TreeUtils.buildPT(rpTree, mention1, mention2));
+                            }
 
-                                if (relation != null) {
-                                    relation.setRelationTree(relationTreeList);
-                                    // length_tree_size += ((RECKCTTreeNodeImpl)relation.getRelationTree().get(1)).getLeaves().size();
-                                    nbr_avail_rels++;
-                                } // if
-                                else {
-                                    if ( (relationTreeList != null) && (relationTreeList.size() > 0) ) {
-                                        relation = new RelationImpl("NONE", mention1, mention2, relationTreeList);
-                                        relation.setRECKParseTree(rpTree);
-                                        nbr_none_rels++;
-                                    }
-                                } // else
-
-                                if ((relation != null) && (!possibleRelationList.contains(relation))) {
-                                    TreeUtils.getTargetTree(relation);
-                                    possibleRelationList.add(relation);
-                                    markDocumentList.add(mark);
-                                    foldRelationList[ifold].add(relation);
-                                    markFoldList[ifold].add(mark);
+                            if (relation != null) {
+                                relation.setRelationTree(relationTreeList);
+                                // length_tree_size += ((RECKCTTreeNodeImpl)relation.getRelationTree().get(1)).getLeaves().size();
+                                candidates.nbr_avail_rels++;
+                            } // if
+                            else {
+                                if ( (relationTreeList != null) && (relationTreeList.size() > 0) ) {
+                                    relation = new RelationImpl("NONE", mention1, mention2, relationTreeList);
+                                    relation.setRECKParseTree(rpTree);
+                                    candidates.nbr_none_rels++;
                                 }
+                            } // else
+
+                            if ((relation != null) && !generatedMarks.contains(mark) && docMarks.add(mark)) {
+                                TreeUtils.getTargetTree(relation);
+                                candidates.relations.add(relation);
+                                candidates.marks.add(mark);
                             }
                         }
                     }
                 }
             }
         }
-        nbr_relations = Statistics.nbr_relations = possibleRelationList.size();
-        // avg_tree_size = length_tree_size/(nbr_avail_rels/3);
-        System.out.println("Generation completed");
-        System.out.println("Number of all relations = " + Statistics.nbr_relations);
-        System.out.println("Number of available relations =  = " + nbr_avail_rels);
-        System.out.println("Number of negative relations = " + nbr_none_rels);
-        // System.out.println("Total length of all relation tree = " + length_tree_size);
-        // System.out.println("Average length of all relation tree = " + avg_tree_size);
+        
+        return candidates;
+    }
+    
+    /**
+     * The potential relation instances of a document, with their marks.
+     */
+    public static class DocumentCandidates {
+        ArrayList relations = new ArrayList();
+        ArrayList marks = new ArrayList();
+        int nbr_avail_rels = 0;
+        int nbr_none_rels = 0;
     }
 
     /**
      * Separate relation instances in training/test sets
-     * of n folds
+     * of n folds, written in parallel with several threads
      */
     public void separatingTrainingAndTestSetWithFolds() {
+        if (reckParams.nbthreads > 1 && reckParams.nbfolds > 1) {
+            writeFoldsInParallel(reckParams.nbthreads);
+            return;
+        }
+        
+        for (int i = 0; i < reckParams.nbfolds; i++)
+            writeFold(i);
+    }
 
-        ArrayList trainingRelationList, testRelationList;
-        ArrayList<String> markTrainList, markTestList;
-        int nbr_training = 0, nbr_test = 0;
-        int i, j;
+    /**
+     * Write the training/test files of a fold
+     */
+    private void writeFold(int i) {
 
-        for (i = 0; i < reckParams.nbfolds; i++) {
-            trainingRelationList = new ArrayList();
-            testRelationList = new ArrayList();
-            markTrainList = new ArrayList();
-            markTestList = new ArrayList();
+        ArrayList trainingRelationList = new ArrayList(), testRelationList = new ArrayList();
+        ArrayList<String> markTrainList = new ArrayList(), markTestList = new ArrayList();
 
-            nbr_test = foldRelationList[i].size();
-            nbr_training = nbr_relations - nbr_test;
+        int nbr_test = foldRelationList[i].size();
+        int nbr_training = nbr_relations - nbr_test;
 
-            System.out.println("Fold no" + i);
-            System.out.println("    Training set: " + nbr_training + " relation instances");
-            System.out.println("    Test set    : " + nbr_test + " relation instances");
+        printFold(i);
 
-            testRelationList.addAll(foldRelationList[i]);
-            markTestList.addAll(markFoldList[i]);
-            
-            for (j = 0; j < reckParams.nbfolds; j++) {
-                if (j != i) {
-                    trainingRelationList.addAll(foldRelationList[j]);
-                    markTrainList.addAll(markFoldList[j]);
+        testRelationList.addAll(foldRelationList[i]);
+        markTestList.addAll(markFoldList[i]);
+        
+        for (int j = 0; j < reckParams.nbfolds; j++) {
+            if (j != i) {
+                trainingRelationList.addAll(foldRelationList[j]);
+                markTrainList.addAll(markFoldList[j]);
+            }
+        }
+
+        if (reckParams.tree_type == 0)
+            writeToKernelFile(i, nbr_training, nbr_test, trainingRelationList, testRelationList,
+                    markTrainList, markTestList, reckParams.outputFilename);
+        else
+            writeToKernelFile_All(i, nbr_training, nbr_test, trainingRelationList, testRelationList,
+                    markTrainList, markTestList, reckParams.outputFilename);
+    }
+
+    /**
+     * Print the sizes of the training/test sets of a fold, in one piece
+     * so that the lines of folds written in parallel are not mixed
+     */
+    private void printFold(int i) {
+        int nbr_test = foldRelationList[i].size();
+        int nbr_training = nbr_relations - nbr_test;
+        String newline = System.getProperty("line.separator");
+        
+        System.out.println("Fold no" + i + newline
+                + "    Training set: " + nbr_training + " relation instances" + newline
+                + "    Test set    : " + nbr_test + " relation instances");
+    }
+
+    /**
+     * Write the folds in parallel.
+     * The relation instances are encoded in batches by a pool of threads,
+     * and each batch is passed through a bounded queue to the threads writing the folds,
+     * each of which writes it to the training or test files of its folds.
+     * So only a few batches are held in memory at any time.
+     * getDependencyPath changes the dependency tree of an instance each time
+     * it is called, once per fold, so its part is encoded for each fold in turn,
+     * as the folds written one after another would see it.
+     */
+    private void writeFoldsInParallel(int nbthreads) {
+        final boolean all = (reckParams.tree_type != 0);
+        final int nbfolds = reckParams.nbfolds;
+        final ArrayList relationList = new ArrayList();
+        final ArrayList markList = new ArrayList();
+        final int[] folds = new int[nbr_relations];
+        for (int i = 0; i < nbfolds; i++) {
+            Arrays.fill(folds, relationList.size(), relationList.size() + foldRelationList[i].size(), i);
+            relationList.addAll(foldRelationList[i]);
+            markList.addAll(markFoldList[i]);
+        }
+        
+        final FoldFiles[] files = new FoldFiles[nbfolds];
+        try {
+            for (int i = 0; i < nbfolds; i++) {
+                printFold(i);
+                files[i] = openFoldFiles(i, reckParams.outputFilename);
+            }
+        }
+        catch (java.io.IOException ioEx) {
+            ioEx.printStackTrace();
+            return;
+        }
+        System.out.println("Output Tree ...");
+        
+        // the writer w writes the folds w, w + nbwriters, ...
+        final int nbwriters = Math.min(nbthreads, nbfolds);
+        final ArrayBlockingQueue[] queues = new ArrayBlockingQueue[nbwriters];
+        ExecutorService executor = Executors.newFixedThreadPool(nbwriters);
+        ArrayList writerList = new ArrayList();
+        for (int w = 0; w < nbwriters; w++) {
+            final ArrayBlockingQueue queue = queues[w] = new ArrayBlockingQueue(QUEUED_BATCHES);
+            final int writer = w;
+            writerList.add(executor.submit(new Callable() {
+                public Object call() throws Exception {
+                    KernelLineEncoder encoder = new KernelLineEncoder(RECKConstants.INTERNAL_BUFFER_SIZE);
+                    KernelBatch batch;
+                    while ((batch = (KernelBatch)queue.take()).instances != null) {
+                        for (int n_fold = writer; n_fold < nbfolds; n_fold += nbwriters) {
+                            FoldFiles fold = files[n_fold];
+                            for (int k = 0; k < batch.instances.length; k++) {
+                                int i = batch.start + k;
+                                Relation relation = (Relation)relationList.get(i);
+                                encoder.reset();
+                                if (all)
+                                    encodeKernelLine_All(encoder, batch.instances[k], relation, n_fold);
+                                else
+                                    encodeKernelLine(encoder, batch.instances[k]);
+                                if (folds[i] == n_fold)
+                                    writeKernelLine(encoder, relation, (String)markList.get(i),
+                                            fold.testList, fold.shared_test, fold.gold_test, fold.mark_test);
+                                else
+                                    writeKernelLine(encoder, relation, (String)markList.get(i),
+                                            fold.trainingList, fold.shared_train, fold.gold_train, fold.mark_train);
+                            }
+                        }
+                    }
+                    for (int n_fold = writer; n_fold < nbfolds; n_fold += nbwriters)
+                        files[n_fold].close();
+                    return null;
                 }
+            }));
+        }
+        
+        ExecutorService pool = Executors.newFixedThreadPool(nbthreads);
+        ArrayDeque encodingList = new ArrayDeque();
+        try {
+            int next = 0;
+            while (next < relationList.size() || !encodingList.isEmpty()) {
+                // keep each encoding thread busy, but no more
+                while (next < relationList.size() && encodingList.size() < 2 * nbthreads) {
+                    final KernelBatch batch = new KernelBatch();
+                    batch.start = next;
+                    next = Math.min(next + ENCODING_BATCH_SIZE, relationList.size());
+                    final List relations = relationList.subList(batch.start, next);
+                    encodingList.add(pool.submit(new Callable() {
+                        public Object call() throws Exception {
+                            batch.instances = new KernelInstance[relations.size()];
+                            for (int k = 0; k < relations.size(); k++) {
+                                Relation relation = (Relation)relations.get(k);
+                                batch.instances[k] = encodeKernelInstance(relation, all);
+                                if (all)
+                                    encodeFolds(batch.instances[k], relation, nbfolds);
+                            }
+                            return batch;
+                        }
+                    }));
+                }
+                
+                KernelBatch batch = (KernelBatch)((Future)encodingList.poll()).get();
+                for (int w = 0; w < nbwriters; w++)
+                    putBatch(queues[w], batch, writerList);
+            }
+            for (int w = 0; w < nbwriters; w++)
+                putBatch(queues[w], new KernelBatch(), writerList);
+            
+            for (int w = 0; w < nbwriters; w++)
+                ((Future)writerList.get(w)).get();
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while writing folds");
+        }
+        catch (ExecutionException exeEx) {
+            if (exeEx.getCause() instanceof RuntimeException)
+                throw (RuntimeException)exeEx.getCause();
+            if (exeEx.getCause() instanceof Error)
+                throw (Error)exeEx.getCause();
+            throw new RuntimeException(exeEx.getCause());
+        }
+        finally {
+            pool.shutdownNow();
+            executor.shutdownNow();
+        }
+        System.out.println("Output Tree completed");
+    }
+
+    /**
+     * Put a batch in the queue of a writer,
+     * waiting for room unless one of the writers has failed.
+     */
+    private void putBatch(ArrayBlockingQueue queue, KernelBatch batch, ArrayList writerList) 
+            throws InterruptedException, ExecutionException {
+        while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+            for (int w = 0; w < writerList.size(); w++) {
+                Future writer = (Future)writerList.get(w);
+                if (writer.isDone())
+                    writer.get();
             }
+        }
+    }
 
-            if (reckParams.tree_type == 0)
-                writeToKernelFile(i, nbr_training, nbr_test, trainingRelationList, testRelationList,
-                        markTrainList, markTestList, reckParams.outputFilename);
-            else
-                writeToKernelFile_All(i, nbr_training, nbr_test, trainingRelationList, testRelationList,
-                        markTrainList, markTestList, reckParams.outputFilename);
+    /**
+     * Encode the dependency trees and the sequences of their paths
+     * of a relation instance for each fold.
+     */
+    private void encodeFolds(KernelInstance instance, Relation relation, int nbfolds) {
+        KernelLineEncoder encoder = new KernelLineEncoder();
+        ArrayList treeList = relation.getRelationTree();
+        
+        instance.foldTrees = new byte[nbfolds][][];
+        instance.foldSequences = new byte[nbfolds][];
+        for (int i = 0; i < nbfolds; i++) {
+            instance.foldTrees[i] = new byte[treeList.size()][];
+            for (int k = 0; k < treeList.size(); k++) {
+                if (instance.trees[k] == null)
+                    instance.foldTrees[i][k] = encoder.reset().append(RECKConstants.begin_tree).append(' ')
+                            .appendTree((Tree)treeList.get(k)).append(' ').toByteArray();
+            }
+            encodeDependencySequences(encoder.reset(), relation);
+            instance.foldSequences[i] = encoder.toByteArray();
         }
     }
 
@@ -1550,9 +2246,18 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
     }
     
     /**
-     * The list that holds the documents in this corpus.
+     * The list that holds the documents in this corpus,
+     * a <code>CorpusStore</code> when it is read from a store.
+     */
+    protected List documentList = new ArrayList();
+    
+    /**
+     * Whether the documents are read from a <code>CorpusStore</code>,
+     * add, set, remove and clear then throw 
+     * <code>UnsupportedOperationException</code>
      */
-    protected ArrayList documentList = new ArrayList();
+    protected boolean readOnly = false;
+    
     protected ArrayList relationListACE = new ArrayList();
     protected ArrayList possibleRelationList = new ArrayList();
     protected ArrayList<String> markDocumentList = new ArrayList();
@@ -1577,4 +2282,19 @@ public class CorpusImpl implements Corpus, Cloneable, Serializable {
     public int nbr_fold = 0;
     public int avg_tree_size = 0;
     
+    /** The labels of positive and negative instances in kernel files */
+    private static final byte[] POSITIVE_LABEL = "1".getBytes(), NEGATIVE_LABEL = "-1".getBytes();
+    private static final byte[] POSITIVE = "1 ".getBytes(), NEGATIVE = "-1 ".getBytes();
+    
+    /** Number of relation instances encoded by a task when the folds are written in parallel */
+    private static final int ENCODING_BATCH_SIZE = 256;
+    /** Number of encoded batches waiting for each writer of folds */
+    private static final int QUEUED_BATCHES = 4;
+    
+    /** Suffixes of the files of instances shared by relation types, and of their labels */
+    public static final String SHARED_SUFFIX = ".kernel", LABELS_SUFFIX = ".labels";
+    
+    /** The lines of relation instances, encoded once per run */
+    private transient IdentityHashMap kernelInstances = null;
+    
 }
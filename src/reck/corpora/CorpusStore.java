@@ -0,0 +1,265 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.corpora;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractList;
+import java.util.ArrayList;
+
+/**
+ * A read-only list of documents stored in one memory-mapped file.
+ * <p>
+ * The file holds the documents in the binary format of
+ * {@link DocumentFormat}, followed by an index with the offset, the length
+ * and the number of entities, mentions and relations of each document.
+ * A document is decoded only when it is accessed, and is kept through a
+ * soft reference so that it can be dropped under memory pressure and decoded
+ * again later. Changes made to a document may then be lost, so code that
+ * modifies documents should keep references to what it needs.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class CorpusStore extends AbstractList {
+
+    /** "RCKS" */
+    public static final int MAGIC = 0x52434B53;
+
+    /** Version of the store written */
+    public static final int VERSION = 1;
+
+    /** Size of the header, the magic number and the version */
+    private static final int HEADER_SIZE = 8;
+
+    /**
+     * Open a store, mapping its file in memory.
+     */
+    public CorpusStore(String storeFilename) throws IOException {
+        RandomAccessFile file = new RandomAccessFile(storeFilename, "r");
+        try {
+            if (file.length() < HEADER_SIZE + 8 || file.readInt() != MAGIC)
+                throw new IOException("Not a corpus store: " + storeFilename);
+            int version = file.readInt();
+            if (version > VERSION)
+                throw new IOException("Unsupported corpus store version " + version);
+
+            // the offset of the index is written at the end of the file
+            file.seek(file.length() - 8);
+            file.seek(file.readLong());
+            int n = file.readInt();
+            offsets = new long[n];
+            lengths = new int[n];
+            nbr_entities = new int[n];
+            nbr_mentions = new int[n];
+            nbr_relations = new int[n];
+            names = new String[n];
+            for (int i = 0; i < n; i++) {
+                offsets[i] = file.readLong();
+                lengths[i] = file.readInt();
+                nbr_entities[i] = file.readInt();
+                nbr_mentions[i] = file.readInt();
+                nbr_relations[i] = file.readInt();
+                names[i] = file.readUTF();
+            }
+
+            mapSegments(file.getChannel());
+        }
+        finally {
+            // the mapping stays valid once the file is closed
+            file.close();
+        }
+
+        cache = new SoftReference[offsets.length];
+        locks = new Object[offsets.length];
+        for (int i = 0; i < locks.length; i++)
+            locks[i] = new Object();
+    }
+
+    /**
+     * Map the documents in segments of at most 2GB,
+     * a document never being split between two segments.
+     */
+    private void mapSegments(FileChannel channel) throws IOException {
+        ArrayList segmentList = new ArrayList();
+        segmentOf = new int[offsets.length];
+        segmentStarts = new long[offsets.length + 1];
+        int nbr_segments = 0;
+        long start = HEADER_SIZE, end = HEADER_SIZE;
+
+        for (int i = 0; i < offsets.length; i++) {
+            long docEnd = offsets[i] + lengths[i];
+            if (docEnd - start > Integer.MAX_VALUE) {
+                segmentList.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+                segmentStarts[nbr_segments++] = start;
+                start = offsets[i];
+            }
+            end = docEnd;
+            segmentOf[i] = nbr_segments;
+        }
+        segmentList.add(channel.map(FileChannel.MapMode.READ_ONLY, start, end - start));
+        segmentStarts[nbr_segments++] = start;
+
+        segments = (MappedByteBuffer[])segmentList.toArray(new MappedByteBuffer[nbr_segments]);
+    }
+
+    /**
+     * Test whether a file is a corpus store.
+     */
+    public static boolean isStoreFile(String filename) {
+        File f = new File(filename);
+        if (!f.isFile())
+            return false;
+        try {
+            RandomAccessFile file = new RandomAccessFile(f, "r");
+            try {
+                return file.length() >= HEADER_SIZE && file.readInt() == MAGIC;
+            }
+            finally {
+                file.close();
+            }
+        }
+        catch (IOException ioEx) {
+            return false;
+        }
+    }
+
+    /**
+     * Write documents, read from .document files in any format,
+     * to a new store.
+     */
+    public static void writeStore(File[] documentFiles, String storeFilename)
+            throws IOException, ClassNotFoundException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(storeFilename), 1 << 16));
+        try {
+            int n = documentFiles.length;
+            long[] offsets = new long[n];
+            int[] lengths = new int[n], entities = new int[n], mentions = new int[n], relations = new int[n];
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = HEADER_SIZE;
+            for (int i = 0; i < n; i++) {
+                DocumentImpl doc = DocumentFormat.readFromFile(documentFiles[i].getCanonicalPath());
+                byte[] data = DocumentFormat.encode(doc);
+                out.write(data);
+                offsets[i] = offset;
+                lengths[i] = data.length;
+                entities[i] = doc.getEntities().size();
+                mentions[i] = doc.getMentions().size();
+                relations[i] = doc.getRelations().size();
+                offset += data.length;
+            }
+
+            out.writeInt(n);
+            for (int i = 0; i < n; i++) {
+                out.writeLong(offsets[i]);
+                out.writeInt(lengths[i]);
+                out.writeInt(entities[i]);
+                out.writeInt(mentions[i]);
+                out.writeInt(relations[i]);
+                out.writeUTF(documentFiles[i].getName());
+            }
+            out.writeLong(offset);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /** The number of documents in the store */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * Get a document, decoding it if it is not in memory.
+     */
+    public Object get(int index) {
+        synchronized (locks[index]) {
+            SoftReference ref = cache[index];
+            Object doc = (ref == null) ? null : ref.get();
+            if (doc == null) {
+                doc = decode(index);
+                cache[index] = new SoftReference(doc);
+            }
+            return doc;
+        }
+    }
+
+    /**
+     * Decode a document from the mapped file, without keeping it.
+     */
+    public DocumentImpl decode(int index) {
+        ByteBuffer data = segments[segmentOf[index]].duplicate();
+        int start = (int)(offsets[index] - segmentStarts[segmentOf[index]]);
+        data.position(start);
+        data.limit(start + lengths[index]);
+        try {
+            return DocumentFormat.decode(data.slice());
+        }
+        catch (IOException ioEx) {
+            throw new IllegalStateException("Couldn't decode the document " + names[index], ioEx);
+        }
+    }
+
+    public int getNbrEntities(int index) {
+        return nbr_entities[index];
+    }
+
+    public int getNbrMentions(int index) {
+        return nbr_mentions[index];
+    }
+
+    public int getNbrRelations(int index) {
+        return nbr_relations[index];
+    }
+
+    /** Name of the .document file a document was read from */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    private long[] offsets = null;
+    private int[] lengths = null;
+    private int[] nbr_entities = null;
+    private int[] nbr_mentions = null;
+    private int[] nbr_relations = null;
+    private String[] names = null;
+
+    private MappedByteBuffer[] segments = null;
+    private int[] segmentOf = null;
+    private long[] segmentStarts = null;
+
+    private SoftReference[] cache = null;
+    private Object[] locks = null;
+}
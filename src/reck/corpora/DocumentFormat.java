@@ -0,0 +1,853 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.corpora;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Label;
+import edu.stanford.nlp.ling.StringLabel;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.Tree;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Hashtable;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import reck.Entity;
+import reck.Mention;
+import reck.Relation.RelationMentionTime;
+import reck.annotation.EntityImpl;
+import reck.annotation.EntitySetImpl;
+import reck.annotation.MentionImpl;
+import reck.annotation.MentionListImpl;
+import reck.annotation.RelationImpl;
+import reck.annotation.RelationSetImpl;
+import reck.trees.RECKCTTreeNodeImpl;
+import reck.trees.RECKDPTreeNodeImpl;
+import reck.trees.RECKParseTreeImpl;
+import reck.trees.RECKTypedDependency;
+import reck.util.Charseq;
+import reck.util.RECKConstants;
+
+/**
+ * A compact binary format for the serialized documents (.document files).
+ * <p>
+ * A file starts with a magic number and a version. Strings are interned:
+ * a string is written once, then referenced by its index in a table built
+ * along the stream. Offsets are written as variable-length integers and
+ * the parse trees are encoded in preorder. Mentions, entities and tree nodes
+ * shared between the entities, the trees and the relations are written as
+ * indexes, so that the document is rebuilt with the same sharing.
+ * <p>
+ * Files written with Java serialization are still read by
+ * {@link #readFromFile(String)}.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class DocumentFormat {
+
+    /** "RECK", which never starts a Java serialization stream */
+    public static final int MAGIC = 0x5245434B;
+
+    /**
+     * Version of the format written. Files of version 1 hold the id
+     * of each mention in place of its role.
+     */
+    public static final int VERSION = 2;
+
+    /**
+     * Test whether a file is written in the binary format.
+     */
+    public static boolean isBinaryFile(String inputFilename) throws IOException {
+        DataInputStream in = new DataInputStream(new FileInputStream(inputFilename));
+        try {
+            return in.readInt() == MAGIC;
+        }
+        catch (java.io.EOFException eofEx) {
+            return false;
+        }
+        finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Read a document from a file in the binary format
+     * or written with Java serialization.
+     */
+    public static DocumentImpl readFromFile(String inputFilename)
+            throws IOException, ClassNotFoundException {
+        if (isBinaryFile(inputFilename))
+            return decode(ByteBuffer.wrap(readBytes(new File(inputFilename))));
+        else
+            return (DocumentImpl)RECKConstants.readFromFile(inputFilename);
+    }
+
+    /**
+     * Write a document to a file in the binary format.
+     */
+    public static void writeToFile(DocumentImpl doc, String outputFilename) throws IOException {
+        Encoder encoder = new Encoder();
+        encoder.writeDocument(doc);
+        FileOutputStream out = new FileOutputStream(outputFilename);
+        try {
+            out.write(encoder.buf, 0, encoder.count);
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Encode a document in the binary format.
+     */
+    public static byte[] encode(DocumentImpl doc) throws IOException {
+        Encoder encoder = new Encoder();
+        encoder.writeDocument(doc);
+        byte[] data = new byte[encoder.count];
+        System.arraycopy(encoder.buf, 0, data, 0, encoder.count);
+        return data;
+    }
+
+    /**
+     * Decode a document from a buffer positioned at its magic number.
+     */
+    public static DocumentImpl decode(ByteBuffer data) throws IOException {
+        try {
+            return new Decoder(data).readDocument();
+        }
+        catch (BufferUnderflowException bufEx) {
+            throw new IOException("Truncated .document data");
+        }
+    }
+
+    private static byte[] readBytes(File f) throws IOException {
+        byte[] data = new byte[(int)f.length()];
+        FileInputStream in = new FileInputStream(f);
+        try {
+            int offset = 0, readLength;
+            while (offset < data.length
+                    && (readLength = in.read(data, offset, data.length - offset)) != -1)
+                offset += readLength;
+            if (offset < data.length)
+                throw new IOException("Couldn't read the whole file " + f);
+        }
+        finally {
+            in.close();
+        }
+        return data;
+    }
+
+    /**
+     * Writes a document into a growing byte array.
+     */
+    private static class Encoder {
+
+        void writeDocument(DocumentImpl doc) throws IOException {
+            writeInt(MAGIC);
+            writeVarInt(VERSION);
+
+            writeString(doc.URI);
+            writeString(doc.source);
+            writeString(doc.type);
+            writeString(doc.version);
+            writeString(doc.author);
+            writeString(doc.encoding);
+            writeString(doc.docId);
+            writeString(doc.textFilename);
+            writeString(doc.taggedContent);
+            writeString(doc.noTaggedContent);
+
+            // the raw content is usually the body of the content without tags
+            String noTagged = doc.noTaggedContent, raw = doc.rawContent;
+            int rawStart = (raw != null && noTagged != null) ? noTagged.indexOf(raw) : -1;
+            if (raw == null)
+                writeVarInt(0);
+            else if (rawStart != -1) {
+                writeVarInt(1);
+                writeVarInt(rawStart);
+                writeVarInt(raw.length());
+            }
+            else {
+                writeVarInt(2);
+                writeString(raw);
+            }
+
+            // entities with their mentions
+            ArrayList entityList = new ArrayList(doc.getEntities());
+            writeVarInt(entityList.size());
+            for (int i = 0; i < entityList.size(); i++) {
+                EntityImpl entity = (EntityImpl)entityList.get(i);
+                entities.put(entity, new Integer(i));
+                writeString(entity.getId());
+                writeString(entity.getType());
+                writeString(entity.getSubType());
+                writeString(entity.getClas());
+
+                Charseq[] attributes = entity.attributes();
+                writeVarInt(attributes == null ? 0 : attributes.length + 1);
+                for (int j = 0; attributes != null && j < attributes.length; j++)
+                    writeCharseq(attributes[j]);
+
+                Mention[] entityMentions = entity.mentions();
+                writeVarInt(entityMentions == null ? 0 : entityMentions.length + 1);
+                for (int j = 0; entityMentions != null && j < entityMentions.length; j++) {
+                    MentionImpl mention = (MentionImpl)entityMentions[j];
+                    mentions.put(mention, new Integer(mentions.size()));
+                    writeString(mention.getId());
+                    writeString(mention.getHeadword());
+                    writeString(mention.getType());
+                    writeString(mention.getLDCType());
+                    writeString(mention.getRoleAttribute());
+                    writeString(mention.getReference());
+                    writeCharseq(mention.getExtent());
+                    writeCharseq(mention.getHead());
+                    writeCharseq(mention.getHwPosition());
+                }
+            }
+
+            // the mention list, in its order of mention extent
+            List mentionList = (List)doc.getMentions();
+            writeVarInt(mentionList.size());
+            for (int i = 0; i < mentionList.size(); i++)
+                writeVarInt(getMentionIndex((Mention)mentionList.get(i)));
+
+            // parse trees
+            ArrayList treeList = doc.getTreeList();
+            writeVarInt(treeList == null ? 0 : treeList.size() + 1);
+            for (int i = 0; treeList != null && i < treeList.size(); i++) {
+                RECKParseTreeImpl rpTree = (RECKParseTreeImpl)treeList.get(i);
+                trees.put(rpTree, new Integer(i));
+                writeParseTree(rpTree, i);
+            }
+
+            // relations
+            ArrayList relationList = new ArrayList(doc.getRelations());
+            writeVarInt(relationList.size());
+            for (int i = 0; i < relationList.size(); i++)
+                writeRelation((RelationImpl)relationList.get(i));
+        }
+
+        void writeParseTree(RECKParseTreeImpl rpTree, int treeIndex) throws IOException {
+            writeCharseq(rpTree.getPosition());
+
+            List sentence = rpTree.getSentence();
+            writeVarInt(sentence == null ? 0 : sentence.size() + 1);
+            for (int j = 0; sentence != null && j < sentence.size(); j++) {
+                Object o = sentence.get(j);
+                writeString( (o instanceof HasWord) ? ((HasWord)o).word() : o.toString() );
+            }
+
+            ArrayList dpList = rpTree.getDependencyList();
+            writeVarInt(dpList == null ? 0 : dpList.size() + 1);
+            for (int j = 0; dpList != null && j < dpList.size(); j++) {
+                Object o = dpList.get(j);
+                if (o instanceof RECKTypedDependency) {
+                    RECKTypedDependency td = (RECKTypedDependency)o;
+                    writeVarInt(1);
+                    writeString(td.reln());
+                    writeSignedVarLong(td.gov().intValue());
+                    writeSignedVarLong(td.dep().intValue());
+                }
+                else if (o instanceof Integer) {
+                    writeVarInt(2);
+                    writeSignedVarLong(((Integer)o).intValue());
+                }
+                else
+                    throw new IOException("Unsupported dependency " + o.getClass().getName());
+            }
+
+            RECKCTTreeNodeImpl CTTree = rpTree.getCTParseTree();
+            writeVarInt(CTTree == null ? 0 : 1);
+            if (CTTree != null) {
+                nodeCount = 0;
+                writeTree(CTTree, CT_TREE, treeIndex);
+            }
+            RECKDPTreeNodeImpl DPTree = rpTree.getDPParseTree();
+            writeVarInt(DPTree == null ? 0 : 1);
+            if (DPTree != null) {
+                nodeCount = 0;
+                writeTree(DPTree, DP_TREE, treeIndex);
+            }
+
+            writeNodeList(rpTree.getDPTreeList(), DP_TREE, treeIndex);
+            writeMentionTrees(rpTree.getCTEntityTrees(), CT_TREE, treeIndex);
+            writeMentionTrees(rpTree.getDPEntityTrees(), DP_TREE, treeIndex);
+        }
+
+        void writeRelation(RelationImpl relation) throws IOException {
+            writeString(relation.getId());
+            writeString(relation.getMentionId());
+            writeString(relation.getLexicalCondition());
+            writeString(relation.getType());
+            writeString(relation.getSubtype());
+            writeVarInt(getEntityIndex(relation.getEntity(0)) + 1);
+            writeVarInt(getEntityIndex(relation.getEntity(1)) + 1);
+            writeVarInt(getMentionIndex(relation.getMention(0)) + 1);
+            writeVarInt(getMentionIndex(relation.getMention(1)) + 1);
+
+            RECKParseTreeImpl rpTree = relation.getRECKParseTree();
+            Integer treeIndex = (rpTree == null) ? null : (Integer)trees.get(rpTree);
+            if (rpTree != null && treeIndex == null)
+                throw new IOException("Parse tree of relation " + relation.getMentionId() + " not in the document");
+            writeVarInt(rpTree == null ? 0 : treeIndex.intValue() + 1);
+
+            ArrayList relationTree = relation.getRelationTree();
+            writeVarInt(relationTree == null ? 0 : relationTree.size() + 1);
+            for (int j = 0; relationTree != null && j < relationTree.size(); j++)
+                writeNodeRef((Tree)relationTree.get(j));
+
+            RelationMentionTime mentionTime = relation.getMentionTime();
+            writeVarInt(mentionTime == null ? 0 : 1);
+            if (mentionTime != null) {
+                writeString(mentionTime.getType());
+                writeString(mentionTime.getVal());
+                writeString(mentionTime.getMod());
+                writeString(mentionTime.getDir());
+            }
+        }
+
+        /**
+         * Write a tree in preorder. A node already written in the same tree
+         * is written as its index in the preorder.
+         */
+        void writeTree(Tree node, int kind, int treeIndex) throws IOException {
+            int[] ref = (int[])nodes.get(node);
+            if (ref != null && ref[0] == kind && ref[1] == treeIndex) {
+                writeVarInt(0);
+                writeVarInt(ref[2]);
+                return;
+            }
+            if ( (kind == CT_TREE && !(node instanceof RECKCTTreeNodeImpl))
+                    || (kind == DP_TREE && !(node instanceof RECKDPTreeNodeImpl)) )
+                throw new IOException("Unsupported tree node " + node.getClass().getName());
+            if (ref == null && treeIndex >= 0)
+                nodes.put(node, new int[] {kind, treeIndex, nodeCount});
+            nodeCount++;
+
+            Tree[] kids = node.children();
+            writeVarInt(kids.length + 1);
+            Label label = node.label();
+            writeString(label == null ? null : label.value());
+            if (kind == CT_TREE)
+                writeCharseq(((RECKCTTreeNodeImpl)node).getPosition());
+            else {
+                RECKDPTreeNodeImpl DPnode = (RECKDPTreeNodeImpl)node;
+                writeCharseq(DPnode.getPosition());
+                writeSignedVarLong(DPnode.index());
+                writeString(DPnode.role());
+                writeString(DPnode.constituent());
+            }
+
+            for (int i = 0; i < kids.length; i++)
+                writeTree(kids[i], kind, treeIndex);
+        }
+
+        /**
+         * Write a node of a tree of the document as its tree and its index
+         * in the preorder, or the whole tree below it when the node is
+         * not found in the document.
+         */
+        void writeNodeRef(Tree node) throws IOException {
+            if (node == null) {
+                writeVarInt(0);
+                return;
+            }
+            int[] ref = (int[])nodes.get(node);
+            if (ref != null) {
+                writeVarInt(ref[0]);
+                writeVarInt(ref[1]);
+                writeVarInt(ref[2]);
+                return;
+            }
+            int kind = (node instanceof RECKCTTreeNodeImpl) ? CT_TREE : DP_TREE;
+            writeVarInt(kind + INLINE_TREE);
+            nodeCount = 0;
+            writeTree(node, kind, -1);
+        }
+
+        /**
+         * Write a node of a given tree as its index in the preorder
+         * of that tree, any other node as a reference.
+         */
+        void writeLocalNodeRef(Tree node, int kind, int treeIndex) throws IOException {
+            int[] ref = (int[])nodes.get(node);
+            if (ref != null && ref[0] == kind && ref[1] == treeIndex)
+                writeVarInt(ref[2] + 1);
+            else {
+                writeVarInt(0);
+                writeNodeRef(node);
+            }
+        }
+
+        void writeNodeList(List nodeList, int kind, int treeIndex) throws IOException {
+            writeVarInt(nodeList == null ? 0 : nodeList.size() + 1);
+            for (int i = 0; nodeList != null && i < nodeList.size(); i++)
+                writeLocalNodeRef((Tree)nodeList.get(i), kind, treeIndex);
+        }
+
+        void writeMentionTrees(Hashtable mentionTrees, int kind, int treeIndex) throws IOException {
+            writeVarInt(mentionTrees.size());
+            Iterator iter = mentionTrees.entrySet().iterator();
+            while (iter.hasNext()) {
+                Map.Entry entry = (Map.Entry)iter.next();
+                writeVarInt(getMentionIndex((Mention)entry.getKey()));
+                writeNodeList((List)entry.getValue(), kind, treeIndex);
+            }
+        }
+
+        int getMentionIndex(Mention mention) throws IOException {
+            if (mention == null)
+                return -1;
+            Integer index = (Integer)mentions.get(mention);
+            if (index == null)
+                throw new IOException("Mention " + mention.getId() + " not in the entities of the document");
+            return index.intValue();
+        }
+
+        int getEntityIndex(Entity entity) throws IOException {
+            if (entity == null)
+                return -1;
+            Integer index = (Integer)entities.get(entity);
+            if (index == null)
+                throw new IOException("Entity " + entity.getId() + " not in the document");
+            return index.intValue();
+        }
+
+        void writeCharseq(Charseq pos) {
+            if (pos == null)
+                writeVarInt(0);
+            else if (pos.getStart() == null || pos.getEnd() == null) {
+                writeVarInt(2);
+                writeVarInt(pos.getStart() == null ? 0 : 1);
+                if (pos.getStart() != null)
+                    writeSignedVarLong(pos.getStart().longValue());
+                writeVarInt(pos.getEnd() == null ? 0 : 1);
+                if (pos.getEnd() != null)
+                    writeSignedVarLong(pos.getEnd().longValue());
+            }
+            else {
+                long start = pos.getStart().longValue();
+                writeVarInt(1);
+                writeSignedVarLong(start);
+                writeSignedVarLong(pos.getEnd().longValue() - start);
+            }
+        }
+
+        /**
+         * Write a string as its index in the table plus one, 0 for null.
+         * A string not yet in the table is followed by its UTF-8 bytes.
+         */
+        void writeString(String st) {
+            if (st == null) {
+                writeVarInt(0);
+                return;
+            }
+            Integer index = (Integer)strings.get(st);
+            if (index != null) {
+                writeVarInt(index.intValue() + 1);
+                return;
+            }
+            strings.put(st, new Integer(strings.size()));
+            writeVarInt(strings.size());
+            byte[] bytes = st.getBytes(UTF8);
+            writeVarInt(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, buf, count, bytes.length);
+            count += bytes.length;
+        }
+
+        void writeInt(int v) {
+            ensureCapacity(4);
+            buf[count++] = (byte)(v >>> 24);
+            buf[count++] = (byte)(v >>> 16);
+            buf[count++] = (byte)(v >>> 8);
+            buf[count++] = (byte)v;
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeSignedVarLong(long v) {
+            writeVarLong((v << 1) ^ (v >> 63));
+        }
+
+        void writeVarLong(long v) {
+            ensureCapacity(10);
+            while ((v & ~0x7FL) != 0) {
+                buf[count++] = (byte)((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[count++] = (byte)v;
+        }
+
+        void ensureCapacity(int n) {
+            if (count + n > buf.length) {
+                byte[] newBuf = new byte[Math.max(2 * buf.length, count + n)];
+                System.arraycopy(buf, 0, newBuf, 0, count);
+                buf = newBuf;
+            }
+        }
+
+        byte[] buf = new byte[1 << 16];
+        int count = 0;
+        int nodeCount = 0;
+
+        HashMap strings = new HashMap();
+        IdentityHashMap entities = new IdentityHashMap();
+        IdentityHashMap mentions = new IdentityHashMap();
+        IdentityHashMap trees = new IdentityHashMap();
+
+        /** node -> {kind of tree, index of tree, index in preorder} */
+        IdentityHashMap nodes = new IdentityHashMap();
+    }
+
+    /**
+     * Rebuilds a document from a buffer.
+     */
+    private static class Decoder {
+
+        Decoder(ByteBuffer data) {
+            this.data = data;
+        }
+
+        DocumentImpl readDocument() throws IOException {
+            if (data.getInt() != MAGIC)
+                throw new IOException("Not a binary .document file");
+            int version = readVarInt();
+            if (version > VERSION)
+                throw new IOException("Unsupported .document version " + version);
+
+            DocumentImpl doc = new DocumentImpl();
+            doc.URI = readString();
+            doc.source = readString();
+            doc.type = readString();
+            doc.version = readString();
+            doc.author = readString();
+            doc.encoding = readString();
+            doc.docId = readString();
+            doc.textFilename = readString();
+            doc.taggedContent = readString();
+            doc.noTaggedContent = readString();
+
+            switch (readVarInt()) {
+                case 1:
+                    int rawStart = readVarInt();
+                    doc.rawContent = doc.noTaggedContent.substring(rawStart, rawStart + readVarInt());
+                    break;
+                case 2:
+                    doc.rawContent = readString();
+                    break;
+                default:
+            }
+
+            // entities with their mentions
+            EntitySetImpl entitySet = new EntitySetImpl(doc);
+            int nbr_entities = readVarInt();
+            for (int i = 0; i < nbr_entities; i++) {
+                String id = readString();
+                String type = readString();
+                String subtype = readString();
+                String clas = readString();
+
+                int n = readVarInt();
+                Charseq[] attributes = (n == 0) ? null : new Charseq[n - 1];
+                for (int j = 0; j < n - 1; j++)
+                    attributes[j] = readCharseq();
+
+                n = readVarInt();
+                Mention[] entityMentions = (n == 0) ? null : new Mention[n - 1];
+                EntityImpl entity = new EntityImpl(id, type, subtype, clas, entityMentions, attributes, null);
+                for (int j = 0; j < n - 1; j++) {
+                    entityMentions[j] = new MentionImpl(entity, readString(), readString(), readString(),
+                            readString(), readString(), readString(),
+                            readCharseq(), readCharseq(), readCharseq());
+                    mentions.add(entityMentions[j]);
+                }
+                entities.add(entity);
+                entitySet.add(entity);
+            }
+            doc.defaultEntities = entitySet;
+
+            int nbr_mentions = readVarInt();
+            ArrayList mentionList = new ArrayList(nbr_mentions);
+            for (int i = 0; i < nbr_mentions; i++)
+                mentionList.add(mentions.get(readVarInt()));
+            doc.defaultMentions = new MentionListImpl(doc, mentionList);
+
+            // parse trees
+            int n = readVarInt();
+            if (n > 0) {
+                ArrayList treeList = new ArrayList(n - 1);
+                for (int i = 0; i < n - 1; i++)
+                    treeList.add(readParseTree());
+                doc.defaultTreeList = treeList;
+            }
+
+            // relations
+            RelationSetImpl relationSet = new RelationSetImpl(doc);
+            int nbr_relations = readVarInt();
+            for (int i = 0; i < nbr_relations; i++)
+                relationSet.add(readRelation(doc));
+            doc.defaultRelations = relationSet;
+
+            return doc;
+        }
+
+        RECKParseTreeImpl readParseTree() throws IOException {
+            Charseq position = readCharseq();
+
+            int n = readVarInt();
+            ArrayList sentence = (n == 0) ? null : new ArrayList(n - 1);
+            for (int j = 0; j < n - 1; j++)
+                sentence.add(new Word(readString()));
+
+            n = readVarInt();
+            ArrayList dpList = (n == 0) ? null : new ArrayList(n - 1);
+            for (int j = 0; j < n - 1; j++) {
+                if (readVarInt() == 1) {
+                    String reln = readString();
+                    int gov = (int)readSignedVarLong();
+                    dpList.add(new RECKTypedDependency(reln, gov, (int)readSignedVarLong()));
+                }
+                else
+                    dpList.add(new Integer((int)readSignedVarLong()));
+            }
+
+            ArrayList CTnodes = new ArrayList();
+            ArrayList DPnodes = new ArrayList();
+            ctTrees.add(CTnodes);
+            dpTrees.add(DPnodes);
+            RECKCTTreeNodeImpl CTTree = null;
+            RECKDPTreeNodeImpl DPTree = null;
+            if (readVarInt() != 0)
+                CTTree = (RECKCTTreeNodeImpl)readTree(CT_TREE, CTnodes);
+            if (readVarInt() != 0)
+                DPTree = (RECKDPTreeNodeImpl)readTree(DP_TREE, DPnodes);
+
+            ArrayList reckDPTreeList = readNodeList(DPnodes);
+            RECKParseTreeImpl rpTree = new RECKParseTreeImpl(sentence, dpList, position, DPTree, CTTree,
+                    reckDPTreeList == null ? new ArrayList() : reckDPTreeList);
+            readMentionTrees(rpTree.getCTEntityTrees(), CTnodes);
+            readMentionTrees(rpTree.getDPEntityTrees(), DPnodes);
+
+            parseTrees.add(rpTree);
+            return rpTree;
+        }
+
+        RelationImpl readRelation(DocumentImpl doc) throws IOException {
+            String id = readString();
+            String mentionId = readString();
+            String lexicalCondition = readString();
+            RelationImpl relation = new RelationImpl(id, readString(), readString());
+            relation.setMentionId(mentionId);
+            relation.setLexicalCondition(lexicalCondition);
+
+            int index = readVarInt();
+            relation.setEntity(0, index == 0 ? null : (EntityImpl)entities.get(index - 1));
+            index = readVarInt();
+            relation.setEntity(1, index == 0 ? null : (EntityImpl)entities.get(index - 1));
+            index = readVarInt();
+            relation.setMention(0, index == 0 ? null : (MentionImpl)mentions.get(index - 1));
+            index = readVarInt();
+            relation.setMention(1, index == 0 ? null : (MentionImpl)mentions.get(index - 1));
+
+            index = readVarInt();
+            if (index > 0)
+                relation.setRECKParseTree((RECKParseTreeImpl)parseTrees.get(index - 1));
+
+            int n = readVarInt();
+            ArrayList relationTree = (n == 0) ? null : new ArrayList(n - 1);
+            for (int j = 0; j < n - 1; j++)
+                relationTree.add(readNodeRef());
+            relation.setRelationTree(relationTree);
+
+            if (readVarInt() != 0)
+                relation.setMentionTime(new RelationMentionTime(readString(), readString(),
+                        readString(), readString()));
+
+            return relation;
+        }
+
+        /**
+         * Read a tree in preorder, adding the nodes read to the given list.
+         * Labels are rebuilt as <code>StringLabel</code>s.
+         */
+        Tree readTree(int kind, ArrayList preorder) throws IOException {
+            int header = readVarInt();
+            if (header == 0)
+                return (Tree)preorder.get(readVarInt());
+
+            int n = header - 1;
+            String value = readString();
+            Label label = (value == null) ? null : new StringLabel(value);
+            Tree[] kids = (n == 0) ? null : new Tree[n];
+            Tree node = null;
+            if (kind == CT_TREE) {
+                Charseq position = readCharseq();
+                node = (n == 0) ? new RECKCTTreeNodeImpl(label, position)
+                        : new RECKCTTreeNodeImpl(label, kids, position);
+            }
+            else {
+                Charseq position = readCharseq();
+                int idx = (int)readSignedVarLong();
+                String role = readString();
+                String constituent = readString();
+                node = (n == 0) ? new RECKDPTreeNodeImpl(label, idx, role, constituent, position)
+                        : new RECKDPTreeNodeImpl(label, idx, role, constituent, kids, position);
+            }
+            preorder.add(node);
+
+            for (int i = 0; i < n; i++)
+                kids[i] = readTree(kind, preorder);
+            // the kids are read after their parent, link them back to it
+            if (n > 0)
+                node.setChildren(kids);
+
+            return node;
+        }
+
+        Tree readNodeRef() throws IOException {
+            int kind = readVarInt();
+            if (kind == 0)
+                return null;
+            if (kind > INLINE_TREE)
+                return readTree(kind - INLINE_TREE, new ArrayList());
+
+            int treeIndex = readVarInt();
+            ArrayList preorder = (ArrayList)((kind == CT_TREE) ? ctTrees : dpTrees).get(treeIndex);
+            return (Tree)preorder.get(readVarInt());
+        }
+
+        ArrayList readNodeList(ArrayList preorder) throws IOException {
+            int n = readVarInt();
+            if (n == 0)
+                return null;
+            ArrayList nodeList = new ArrayList(n - 1);
+            for (int i = 0; i < n - 1; i++) {
+                int index = readVarInt();
+                nodeList.add( (index > 0) ? preorder.get(index - 1) : readNodeRef() );
+            }
+            return nodeList;
+        }
+
+        void readMentionTrees(Hashtable mentionTrees, ArrayList preorder) throws IOException {
+            int n = readVarInt();
+            for (int i = 0; i < n; i++) {
+                Mention mention = (Mention)mentions.get(readVarInt());
+                ArrayList nodeList = readNodeList(preorder);
+                if (nodeList != null)
+                    mentionTrees.put(mention, nodeList);
+            }
+        }
+
+        Charseq readCharseq() {
+            switch (readVarInt()) {
+                case 0:
+                    return null;
+                case 1:
+                    long start = readSignedVarLong();
+                    return new Charseq(new Long(start), new Long(start + readSignedVarLong()));
+                default:
+                    Long startPos = (readVarInt() == 0) ? null : new Long(readSignedVarLong());
+                    Long endPos = (readVarInt() == 0) ? null : new Long(readSignedVarLong());
+                    return new Charseq(startPos, endPos);
+            }
+        }
+
+        String readString() throws IOException {
+            int index = readVarInt();
+            if (index == 0)
+                return null;
+            if (index <= strings.size())
+                return (String)strings.get(index - 1);
+            if (index != strings.size() + 1)
+                throw new IOException("Corrupted string table in .document data");
+
+            int length = readVarInt();
+            String st = null;
+            if (data.hasArray()) {
+                st = new String(data.array(), data.arrayOffset() + data.position(), length, UTF8);
+                data.position(data.position() + length);
+            }
+            else {
+                byte[] bytes = new byte[length];
+                data.get(bytes);
+                st = new String(bytes, UTF8);
+            }
+            strings.add(st);
+            return st;
+        }
+
+        int readVarInt() {
+            return (int)readVarLong();
+        }
+
+        long readSignedVarLong() {
+            long v = readVarLong();
+            return (v >>> 1) ^ -(v & 1);
+        }
+
+        long readVarLong() {
+            int b = data.get();
+            long v = b & 0x7F;
+            int shift = 7;
+            while ((b & 0x80) != 0) {
+                b = data.get();
+                v |= (long)(b & 0x7F) << shift;
+                shift += 7;
+            }
+            return v;
+        }
+
+        ByteBuffer data = null;
+
+        ArrayList strings = new ArrayList();
+        ArrayList entities = new ArrayList();
+        ArrayList mentions = new ArrayList();
+        ArrayList parseTrees = new ArrayList();
+
+        /** nodes of the constituent and dependency trees, in preorder */
+        ArrayList ctTrees = new ArrayList();
+        ArrayList dpTrees = new ArrayList();
+    }
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final int CT_TREE = 1;
+    private static final int DP_TREE = 2;
+    private static final int INLINE_TREE = 2;
+}
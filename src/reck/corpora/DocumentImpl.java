@@ -42,6 +42,7 @@ import java.io.ObjectOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Serializable;
+import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
@@ -61,12 +62,14 @@ import reck.annotation.EntitySetImpl;
 import reck.annotation.MentionImpl;
 import reck.annotation.MentionListImpl;
 import reck.annotation.RelationSetImpl;
+import reck.parser.lexparser.RECKLexicalizedParser;
 import reck.trees.RECKCTTreeNodeImpl;
 import reck.trees.RECKParseTreeImpl;
 import reck.trees.RECKDPTreeNodeImpl;
 import reck.util.Charseq;
 import reck.util.ParserConstants;
 import reck.util.RECKConstants;
+import reck.util.RECKParameters;
 
 /**
  * A document consistent with ACE 2004 corpus.
@@ -75,6 +78,13 @@ import reck.util.RECKConstants;
  */
 public class DocumentImpl implements reck.Document, Cloneable, Serializable {
 
+    /** The value of the first release, whose .document files are still read */
+    private static final long serialVersionUID = -7234902809652067514L;
+
+    /** Construction of an empty document, filled by a reader. */
+    DocumentImpl() {
+    }
+    
     public DocumentImpl(String taggedContent, String URI, String source, String type, 
             String version, String author, String encoding, String docId, 
             EntitySet entities, RelationSet relations) {
@@ -159,7 +169,8 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
             this.textFilename = 
                     sourceFilename.substring(0, sourceFilename.lastIndexOf(".")) 
                     + ".txt";
-            this.exportContentToFile(textFilename, rawContent, encoding);
+            if (RECKParameters.getRECKParameters() != null && RECKParameters.getRECKParameters().exportText)
+                this.exportContentToFile(textFilename, rawContent, encoding);
             
             this.defaultEntities = new EntitySetImpl(this, docElement);
             this.defaultMentions = new MentionListImpl(this);
@@ -414,67 +425,88 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
         return docContent;
     }
     
-    public static String trimUnrealReturns(String st) {
-        String ret = st, text = st, pre = "";
-        while (text.contains("\n")) {
-            int i = text.indexOf("\n");
-            
-            if ( (i < text.length() - 1) && (text.charAt(i + 1) == '\n') ) {
-                pre = pre + text.substring(0, i + 2);
-                text = text.substring(i + 2);
-            }
-            else {
-
-                // char before return is a letter
-                if (pre.length() + i >= startSentence) {
-                    text = text.substring(0, i) + " " + text.substring(i + 1);
-                    ret = pre + text;
-                }
-                else {
-                    pre = pre + text.substring(0, i + 1);
-                    text = text.substring(i + 1);
-                }
-
-            }
-
-        }
-        
-        return ret;
-    }
-
+    /**
+     * Remove the tags of the content in one pass, finding the offsets of the 
+     * body of the document and replacing the returns that are not followed 
+     * by another return, from the start of the body.
+     */
     public String toNoTaggedContent(String taggedContent) {
-        String noTaggedCT = "";
+        int length = taggedContent.length();
+        StringBuilder noTaggedCT = new StringBuilder(length);
         int startRawText = -1, endRawText = -1;
         
+        // returns not followed by another return, decided at the end
+        int[] singleReturns = new int[64];
+        int nbr_singleReturns = 0;
+        boolean pendingReturn = false;
+        
         int count = 0;
-        while (count < taggedContent.length()) {
-            int tagIndex = count;
-            while (tagIndex < taggedContent.length() && taggedContent.charAt(tagIndex) != '<') tagIndex++;
-            if (tagIndex < taggedContent.length()) {
-                noTaggedCT = noTaggedCT + taggedContent.substring(count, tagIndex);
-                while (tagIndex < taggedContent.length() && taggedContent.charAt(tagIndex) != '>') tagIndex++;
+        while (count < length) {
+            char c = taggedContent.charAt(count);
+            if (c == '<') {
+                int tagIndex = taggedContent.indexOf('>', count);
+                if (tagIndex == -1)
+                    tagIndex = length;
                 count = tagIndex + 1;
-                if (taggedContent.substring(0, count).endsWith("<BODY>")) {
+                if (endsWithTag(taggedContent, count, "<BODY>")) {
                     startRawText = noTaggedCT.length();
                 }
-                if (taggedContent.substring(0, count).endsWith("</BODY>")) {
+                if (endsWithTag(taggedContent, count, "</BODY>")) {
                     endRawText = noTaggedCT.length();
-                } 
+                }
+                continue;
             }
-            else {
-                noTaggedCT = noTaggedCT + taggedContent.substring(count);
-                count = tagIndex;
+            
+            if (pendingReturn) {
+                pendingReturn = false;
+                if (c == '\n') {
+                    // two following returns are kept
+                    noTaggedCT.append(c);
+                    count++;
+                    continue;
+                }
+                if (nbr_singleReturns == singleReturns.length) {
+                    int[] tmp = new int[2 * singleReturns.length];
+                    System.arraycopy(singleReturns, 0, tmp, 0, nbr_singleReturns);
+                    singleReturns = tmp;
+                }
+                singleReturns[nbr_singleReturns++] = noTaggedCT.length() - 1;
+            }
+            else if (c == '\n')
+                pendingReturn = true;
+            
+            noTaggedCT.append(c);
+            count++;
+        }
+        if (pendingReturn) {
+            if (nbr_singleReturns == singleReturns.length) {
+                int[] tmp = new int[singleReturns.length + 1];
+                System.arraycopy(singleReturns, 0, tmp, 0, nbr_singleReturns);
+                singleReturns = tmp;
             }
+            singleReturns[nbr_singleReturns++] = noTaggedCT.length() - 1;
         }
         
-        noTaggedCT = trimUnrealReturns(noTaggedCT);
+        if (startRawText > 0)
+            this.startSentence = startRawText;
         
-        if (startRawText > 0) {
-            this.rawContent = noTaggedCT.substring(startRawText, endRawText);
-            DocumentImpl.startSentence = startRawText;
-        }
+        for (int i = 0; i < nbr_singleReturns; i++)
+            if (singleReturns[i] >= startSentence)
+                noTaggedCT.setCharAt(singleReturns[i], ' ');
+        
+        String noTaggedText = noTaggedCT.toString();
+        if (startRawText > 0)
+            this.rawContent = noTaggedText.substring(startRawText, endRawText);
         
-        return noTaggedCT;
+        return noTaggedText;
+    }
+    
+    /**
+     * Test if the content read until an offset ends with a tag.
+     */
+    private static boolean endsWithTag(String taggedContent, int end, String tag) {
+        end = Math.min(end, taggedContent.length());
+        return (end >= tag.length()) && taggedContent.startsWith(tag, end - tag.length());
     }
     
     public void exportContentToFile(String outputFilename, String fileContent, String encoding) {
@@ -602,6 +634,7 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
             nodeList.add(newNode);
             parseTree.getDPEntityTrees().put(mention, nodeList);
         }
+        parseTree.treesChanged();
         
         return parseTree;
     }
@@ -760,6 +793,7 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
             nodeList.add(newNode);
             parseTree.getCTEntityTrees().put(mention, nodeList);
         }
+        parseTree.treesChanged();
         
         return parseTree;
     }
@@ -823,18 +857,29 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
                 document = documentPreprocessor.getSentencesFromXML(textFilename, escaper, elementDelimiter, sentenceDelimiter);
             }
             else {
-                document = documentPreprocessor.getSentencesFromText(textFilename, escaper, sentenceDelimiter, tagDelimiter);
+                // the content is already loaded, no need to read it from the text file
+                document = documentPreprocessor.getSentencesFromText(new StringReader(rawContent), escaper, sentenceDelimiter, tagDelimiter);
             }
         }
         catch (IOException e) {
             pwErr.println("ERROR: Couldn't open file: " + textFilename);
         }
         
-        ArrayList treeList = ParserConstants.lp.parseFile(textFilename, 
-                noTaggedContent, startSentence, tokenized, tokenizerFactory, 
-                document,
-                documentPreprocessor, 
-                escaper, tagDelimiter);
+        ArrayList treeList = null;
+        RECKLexicalizedParser lp = ParserConstants.parserPool.acquire();
+        if (RECKParameters.getRECKParameters() != null)
+            lp.setNbThreads(RECKParameters.getRECKParameters().nbparsethreads);
+        lp.setParseCache(ParserConstants.getParseCache());
+        try {
+            treeList = lp.parseFile(textFilename, 
+                    noTaggedContent, startSentence, tokenized, tokenizerFactory, 
+                    document,
+                    documentPreprocessor, 
+                    escaper, tagDelimiter);
+        }
+        finally {
+            ParserConstants.parserPool.release(lp);
+        }
         
         return treeList;
     }
@@ -867,8 +912,13 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
     }
     
     public void writeToFile(String outputPath) throws IOException {
+        String outputFilename = outputPath + "\\" + docId + ".document";
+        if (RECKParameters.getRECKParameters() == null || RECKParameters.getRECKParameters().binaryFormat) {
+            DocumentFormat.writeToFile(this, outputFilename);
+            return;
+        }
         ObjectOutputStream out = new ObjectOutputStream(
-                new FileOutputStream(outputPath + "\\" + docId + ".document"));
+                new FileOutputStream(outputFilename));
         out.writeObject(this);
         out.close(); // Also flushes output    
     }
@@ -884,7 +934,12 @@ public class DocumentImpl implements reck.Document, Cloneable, Serializable {
     String taggedContent = null;
     String noTaggedContent = null;
     String rawContent = null;
-    static int startSentence = -1;
+    
+    /**
+     * Offset where the text body of the document starts
+     */
+    private transient int startSentence = -1;
+
     String URI = null;
     String source = null;
     String type = null;
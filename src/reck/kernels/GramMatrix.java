@@ -0,0 +1,291 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import reck.util.FeatureDictionary;
+
+/**
+ * The kernels of all pairs of the instances of the folds of a learning
+ * folder, each pair computed once and kept in a memory-mapped file, read
+ * by the {@link KernelTrainer} of every relation type of every fold, and
+ * by the models it trains to classify the test instances.
+ * <p>
+ * The instances of all folds are numbered once, the training instances
+ * of a fold being the test instances of the others, and the matrix being
+ * symmetric, only the kernels K(i, j) with i &lt;= j are kept.
+ * <p>
+ * The file holds a header, the magic number, the version, the number of
+ * instances, the description of the kernel of the {@link TreeKernelEngine}
+ * and the instances, followed by the kernels row by row, each row i from
+ * the column i on, as doubles. Instances are given without their labels,
+ * as returned by {@link #instanceOf}.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class GramMatrix {
+
+    /** "RCKG" */
+    public static final int MAGIC = 0x52434B47;
+
+    /** Version of the matrix written */
+    public static final int VERSION = 2;
+
+    /** Size of the mapped segments, a multiple of 8 so that no double spans two segments */
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    /**
+     * Open a matrix, reading its instances and mapping its kernels in memory.
+     */
+    public GramMatrix(String filename) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(filename)));
+        long headerLength = 0;
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a kernel matrix: " + filename);
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported kernel matrix version " + version 
+                        + ", compute it again in mode 9: " + filename);
+            nbr_instances = in.readInt();
+            description = in.readUTF();
+            headerLength = 12 + 2 + utfLength(description);
+            instances = new FeatureDictionary(nbr_instances);
+            for (int i = 0; i < nbr_instances; i++) {
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                instances.add(new String(bytes, "UTF-8"));
+                headerLength += 4 + bytes.length;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        dataOffset = align(headerLength);
+        RandomAccessFile file = new RandomAccessFile(filename, "r");
+        try {
+            if (file.length() < dataOffset + 8L * nbrPairs(nbr_instances))
+                throw new IOException("Truncated kernel matrix: " + filename);
+            segments = mapSegments(file.getChannel(), FileChannel.MapMode.READ_ONLY, file.length());
+        }
+        finally {
+            // the mapping stays valid once the file is closed
+            file.close();
+        }
+    }
+
+    /**
+     * Compute the kernels of all pairs of distinct instances with several
+     * threads, one row at a time, and write them to a new file.
+     */
+    public static void compute(final TreeKernelEngine engine, List instanceList,
+            String filename, int nbthreads) throws IOException {
+        final int n = instanceList.size();
+        FeatureDictionary distinct = new FeatureDictionary(n);
+        for (int i = 0; i < n; i++)
+            distinct.add((String)instanceList.get(i));
+        if (distinct.size() != n)
+            throw new IllegalArgumentException("The instances of a kernel matrix must be distinct");
+        final KernelExample[] examples = new KernelExample[n];
+        for (int i = 0; i < n; i++)
+            examples[i] = engine.parse("0 " + instanceList.get(i));
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(filename)));
+        long headerLength = 0;
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            String description = engine.getDescription();
+            out.writeUTF(description);
+            headerLength = 12 + 2 + utfLength(description);
+            for (int i = 0; i < n; i++) {
+                byte[] bytes = ((String)instanceList.get(i)).getBytes("UTF-8");
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                headerLength += 4 + bytes.length;
+            }
+        }
+        finally {
+            out.close();
+        }
+
+        final long dataOffset = align(headerLength);
+        final MappedByteBuffer[] segments;
+        RandomAccessFile file = new RandomAccessFile(filename, "rw");
+        try {
+            long length = dataOffset + 8L * nbrPairs(n);
+            file.setLength(length);
+            segments = mapSegments(file.getChannel(), FileChannel.MapMode.READ_WRITE, length);
+        }
+        finally {
+            file.close();
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(Math.max(nbthreads, 1));
+        ArrayList tasks = new ArrayList();
+        for (int i = 0; i < n; i++) {
+            final int row = i;
+            tasks.add(new Callable() {
+                public Object call() throws Exception {
+                    for (int j = row; j < n; j++) {
+                        long offset = dataOffset + 8L * index(row, j, n);
+                        segments[(int)(offset / SEGMENT_SIZE)].putDouble((int)(offset % SEGMENT_SIZE),
+                                engine.kernel(examples[row], examples[j]));
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            List futureList = pool.invokeAll(tasks);
+            for (int i = 0; i < futureList.size(); i++)
+                ((Future)futureList.get(i)).get();
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while computing the kernel matrix");
+        }
+        catch (ExecutionException exeEx) {
+            if (exeEx.getCause() instanceof RuntimeException)
+                throw (RuntimeException)exeEx.getCause();
+            if (exeEx.getCause() instanceof Error)
+                throw (Error)exeEx.getCause();
+            throw new RuntimeException(exeEx.getCause());
+        }
+        finally {
+            pool.shutdown();
+        }
+
+        for (int i = 0; i < segments.length; i++)
+            segments[i].force();
+    }
+
+    /** Number of kernels kept for n instances, n (n + 1) / 2 */
+    public static long nbrPairs(int n) {
+        return (long)n * (n + 1) / 2;
+    }
+
+    /** Position of K(i, j), i &lt;= j, in the kernels of n instances */
+    private static long index(int i, int j, int n) {
+        return (long)i * n - (long)i * (i - 1) / 2 + (j - i);
+    }
+
+    /** Length of a string written by writeUTF, without its 2 bytes of length */
+    private static int utfLength(String s) {
+        int length = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            length += (c >= 0x0001 && c <= 0x007F) ? 1 : (c > 0x07FF) ? 3 : 2;
+        }
+        return length;
+    }
+
+    private static MappedByteBuffer[] mapSegments(FileChannel channel, FileChannel.MapMode mode, long length)
+            throws IOException {
+        int nbr_segments = (int)((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        MappedByteBuffer[] segments = new MappedByteBuffer[nbr_segments];
+        for (int i = 0; i < nbr_segments; i++) {
+            long start = i * SEGMENT_SIZE;
+            segments[i] = channel.map(mode, start, Math.min(SEGMENT_SIZE, length - start));
+        }
+        return segments;
+    }
+
+    /** The kernels start at a multiple of 8 */
+    private static long align(long offset) {
+        return (offset + 7) & ~7L;
+    }
+
+    /**
+     * The instance of a line of a learning file or of a model, without its
+     * label and comment, with single spaces.
+     */
+    public static String instanceOf(String line) {
+        int comment = line.indexOf('#');
+        if (comment != -1)
+            line = line.substring(0, comment);
+        line = line.trim();
+        int i = 0;
+        while (i < line.length() && !Character.isWhitespace(line.charAt(i)))
+            i++;
+        return line.substring(i).trim().replaceAll("\\s+", " ");
+    }
+
+    /**
+     * Whether the matrix holds the kernels of an engine.
+     */
+    public boolean matches(TreeKernelEngine engine) {
+        return description.equals(engine.getDescription());
+    }
+
+    /** Number of instances */
+    public int getNbrInstances() {
+        return nbr_instances;
+    }
+
+    /** The i-th instance */
+    public String getInstance(int i) {
+        return instances.get(i);
+    }
+
+    /**
+     * The number of an instance, or -1 if it is not in the matrix.
+     */
+    public int indexOf(String instance) {
+        return instances.indexOf(instance);
+    }
+
+    /**
+     * The kernel of the i-th and the j-th instances.
+     */
+    public double get(int i, int j) {
+        long offset = (i <= j) ? dataOffset + 8L * index(i, j, nbr_instances)
+                : dataOffset + 8L * index(j, i, nbr_instances);
+        return segments[(int)(offset / SEGMENT_SIZE)].getDouble((int)(offset % SEGMENT_SIZE));
+    }
+
+    private int nbr_instances = 0;
+    private String description = null;
+    private FeatureDictionary instances = null;
+    private long dataOffset = 0;
+    private MappedByteBuffer[] segments = null;
+}
@@ -0,0 +1,284 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Check the tree kernels of {@link TreeKernelEvaluator} against their
+ * recursive definitions in {@link ReferenceTreeKernels}, on all pairs of
+ * instances, and time both, keeping the fastest of {@link #RUNS} runs.
+ * <p>
+ * java -cp RECK.jar reck.kernels.KernelCheck [instances tree_kernels.param]
+ * <p>
+ * Without arguments, the instances are 200 random parse trees of about 80
+ * nodes, with the subset tree kernel on tree 0, the partial tree kernel on
+ * tree 1, the same tree, and the string kernel on a sequence of 12 words,
+ * lambda and mu being 0.4. The exit status is 1 if a value differs by more
+ * than 1e-12 from its definition.
+ * <p>
+ * java -cp RECK.jar reck.kernels.KernelCheck model instances predictions tree_kernels.param r N
+ * <p>
+ * compares the engine with SVM-light-TK built with the kernel.h of
+ * learning/CK1 (r = 0) or learning/CK1_SSK (r = 1): the predictions
+ * written by svm_classify for the instances with the model are computed
+ * again from the support vectors of the model, with the same option -N.
+ * <p>
+ * java -cp RECK.jar reck.kernels.KernelCheck fixtures tree_kernels.param r N
+ * <p>
+ * runs the same comparison on the instances of learning/fixtures, written
+ * in mode 3 with -r 0 to CK1 and with -r 1 to CK1_SSK, with the model and
+ * the predictions of SVM-light-TK kept next to them, Nk.model and
+ * Nk.predictions for the option -N k:
+ * <pre>
+ * svm_learn -t 4 -U 1 -N 3 learning/fixtures/CK1_SSK/0.train learning/fixtures/CK1_SSK/N3.model
+ * svm_classify learning/fixtures/CK1_SSK/0.test learning/fixtures/CK1_SSK/N3.model learning/fixtures/CK1_SSK/N3.predictions
+ * java -cp RECK.jar reck.kernels.KernelCheck learning/fixtures learning/tree_kernels.param 1 3
+ * </pre>
+ * with tree_kernels.param in the folder of svm_learn, and the default
+ * linear kernel of the vectors. The engine is only used in place of
+ * svm_learn and svm_classify when this check passes, see
+ * {@link #checkFixtures}.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelCheck {
+
+    /** Largest relative difference accepted */
+    public static final double TOLERANCE = 1e-12;
+    public static final int RUNS = 3;
+
+    /** Folder of the instances, models and predictions of {@link #checkFixtures} */
+    public static final String FIXTURES_FOLDER = "learning" + File.separator + "fixtures";
+
+    /** Largest difference accepted with a prediction of svm_classify, relative above 1 */
+    public static final double PREDICTION_TOLERANCE = 1e-6;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length >= 6) {
+            TreeKernelEngine engine = new TreeKernelEngine(args[3], Integer.parseInt(args[4]), Integer.parseInt(args[5]));
+            if (!checkPredictions(engine, args[0], args[1], args[2]))
+                System.exit(1);
+            return;
+        }
+        if (args.length == 4) {
+            if (!checkFixtures(args[0], args[1], Integer.parseInt(args[2]), Integer.parseInt(args[3])))
+                System.exit(1);
+            return;
+        }
+
+        TreeKernelEngine engine;
+        ArrayList examples;
+        if (args.length >= 2) {
+            engine = new TreeKernelEngine(args[1], TreeKernelEngine.CK1, TreeKernelEngine.FULL_NORMALIZATION);
+            examples = engine.readExamples(args[0]);
+        }
+        else {
+            engine = new TreeKernelEngine(new TreeKernelParameters[] {
+                new TreeKernelParameters(TreeKernelParameters.SUBSET_TREE_KERNEL, 1, 0.4, 0.4, 1, true),
+                new TreeKernelParameters(TreeKernelParameters.PARTIAL_TREE_KERNEL, 3, 0.4, 0.4, 1, true),
+                new TreeKernelParameters(TreeKernelParameters.STRING_KERNEL, 6, 0.4, 0.4, 1, true)
+            }, TreeKernelEngine.CK1, TreeKernelEngine.FULL_NORMALIZATION);
+            examples = randomExamples(engine, 200, new Random(0));
+        }
+
+        boolean passed = true;
+        for (int i = 0; i < engine.getNbrTrees(); i++)
+            passed &= checkTree(engine.getParameters(i), examples, i);
+        if (!passed)
+            System.exit(1);
+    }
+
+    /**
+     * Check the engine of a composite kernel and normalization against the
+     * model and the predictions of SVM-light-TK in a folder of fixtures,
+     * CK1 or CK1_SSK. Returns false if they differ, or if they have not
+     * been written there by svm_learn and svm_classify.
+     */
+    public static boolean checkFixtures(String fixturesFolder, String paramFilename, 
+            int composite, int normalization) throws IOException {
+        File folder = new File(fixturesFolder, (composite == TreeKernelEngine.CK1) ? "CK1" : "CK1_SSK");
+        File model = new File(folder, "N" + normalization + ".model");
+        File predictions = new File(folder, "N" + normalization + ".predictions");
+        if (!model.exists() || !predictions.exists()) {
+            System.out.println("No model and predictions of SVM-light-TK with -N " + normalization 
+                    + " in " + folder + ", the kernels cannot be checked");
+            return false;
+        }
+        TreeKernelEngine engine = new TreeKernelEngine(paramFilename, composite, normalization);
+        return checkPredictions(engine, model.getPath(), new File(folder, "0.test").getPath(), predictions.getPath());
+    }
+
+    /**
+     * Compare the predictions of svm_classify with the sums over the support
+     * vectors of the model of alpha * y * kernel, minus the threshold b.
+     */
+    private static boolean checkPredictions(TreeKernelEngine engine, String modelFilename,
+            String instancesFilename, String predictionsFilename) throws IOException {
+        KernelModel model = new KernelModel(engine, modelFilename);
+        ArrayList examples = engine.readExamples(instancesFilename);
+        ArrayList predictions = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(predictionsFilename)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0)
+                    predictions.add(Double.valueOf(line.trim()));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        if (predictions.size() != examples.size())
+            throw new IllegalArgumentException(predictions.size() + " predictions for "
+                    + examples.size() + " instances");
+
+        double difference = 0;
+        for (int i = 0; i < examples.size(); i++) {
+            double prediction = model.classify((KernelExample)examples.get(i));
+            double expected = ((Double)predictions.get(i)).doubleValue();
+            difference = Math.max(difference, Math.abs(prediction - expected) / Math.max(1, Math.abs(expected)));
+        }
+
+        System.out.println(examples.size() + " instances, " + model.getNbrSupportVectors() + " support vectors, "
+                + "largest difference with svm_classify " + difference);
+        return difference <= PREDICTION_TOLERANCE;
+    }
+
+    /**
+     * Compare the kernels of the i-th trees of all pairs of instances.
+     */
+    private static boolean checkTree(TreeKernelParameters params, ArrayList examples, int i) {
+        int n = examples.size();
+        KernelTree[] trees = new KernelTree[n];
+        for (int k = 0; k < n; k++)
+            trees[k] = ((KernelExample)examples.get(k)).getTree(i);
+
+        double[] values = new double[n * n];
+        TreeKernelEvaluator evaluator = new TreeKernelEvaluator();
+        long fastTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long time = System.nanoTime();
+            for (int k = 0; k < n; k++) {
+                for (int l = 0; l < n; l++) {
+                    if (trees[k] != null && trees[l] != null)
+                        values[k * n + l] = fastKernel(evaluator, params, trees[k], trees[l]);
+                }
+            }
+            fastTime = Math.min(fastTime, System.nanoTime() - time);
+        }
+
+        double difference = 0;
+        long referenceTime = Long.MAX_VALUE;
+        for (int run = 0; run < RUNS; run++) {
+            long time = System.nanoTime();
+            for (int k = 0; k < n; k++) {
+                for (int l = 0; l < n; l++) {
+                    if (trees[k] != null && trees[l] != null) {
+                        double value = referenceKernel(params, trees[k], trees[l]);
+                        double scale = Math.max(Math.abs(value), Double.MIN_NORMAL);
+                        difference = Math.max(difference, Math.abs(values[k * n + l] - value) / scale);
+                    }
+                }
+            }
+            referenceTime = Math.min(referenceTime, System.nanoTime() - time);
+        }
+
+        System.out.println("tree " + i + ", kernel " + params.kernelType + ": " + n * n + " pairs, "
+                + "reference " + referenceTime / 1000000 + " ms, evaluator " + fastTime / 1000000 + " ms, "
+                + "largest relative difference " + difference);
+        return difference <= TOLERANCE;
+    }
+
+    private static double fastKernel(TreeKernelEvaluator evaluator, TreeKernelParameters p, KernelTree t1, KernelTree t2) {
+        switch (p.kernelType) {
+            case TreeKernelParameters.SUBTREE_KERNEL:
+                return evaluator.subsetTreeKernel(t1, t2, p.lambda, 0);
+            case TreeKernelParameters.SUBSET_TREE_KERNEL:
+                return evaluator.subsetTreeKernel(t1, t2, p.lambda, 1);
+            case TreeKernelParameters.PARTIAL_TREE_KERNEL:
+                return evaluator.partialTreeKernel(t1, t2, p.lambda, p.mu);
+            case TreeKernelParameters.STRING_KERNEL:
+                return evaluator.stringKernel(t1, t2, p.lambda);
+            default:
+                return 0;
+        }
+    }
+
+    private static double referenceKernel(TreeKernelParameters p, KernelTree t1, KernelTree t2) {
+        switch (p.kernelType) {
+            case TreeKernelParameters.SUBTREE_KERNEL:
+                return ReferenceTreeKernels.subsetTreeKernel(t1, t2, p.lambda, 0);
+            case TreeKernelParameters.SUBSET_TREE_KERNEL:
+                return ReferenceTreeKernels.subsetTreeKernel(t1, t2, p.lambda, 1);
+            case TreeKernelParameters.PARTIAL_TREE_KERNEL:
+                return ReferenceTreeKernels.partialTreeKernel(t1, t2, p.lambda, p.mu);
+            case TreeKernelParameters.STRING_KERNEL:
+                return ReferenceTreeKernels.stringKernel(t1, t2, p.lambda);
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Random instances, a parse tree twice and a sequence of words.
+     */
+    private static ArrayList randomExamples(TreeKernelEngine engine, int n, Random random) {
+        ArrayList examples = new ArrayList();
+        for (int k = 0; k < n; k++) {
+            String tree = randomTree(random, 0).toString();
+            StringBuffer sequence = new StringBuffer("(FAKEROOT");
+            for (int l = 0; l < 12; l++)
+                sequence.append(" (w").append(random.nextInt(WORDS)).append(')');
+            sequence.append(')');
+            examples.add(engine.parse("1 |BT| " + tree + " |BT| " + tree + " |BT| " + sequence
+                    + " |ET| 1:1 |EV|"));
+        }
+        return examples;
+    }
+
+    private static StringBuffer randomTree(Random random, int depth) {
+        StringBuffer tree = new StringBuffer("(");
+        if (depth >= MAX_DEPTH || (depth > 1 && random.nextInt(4) == 0)) {
+            tree.append(TAGS[random.nextInt(TAGS.length)]).append(" w").append(random.nextInt(WORDS));
+            return tree.append(')');
+        }
+        tree.append(PHRASES[random.nextInt(PHRASES.length)]);
+        int nbr_kids = 1 + random.nextInt(3);
+        for (int i = 0; i < nbr_kids; i++)
+            tree.append(' ').append(randomTree(random, depth + 1));
+        return tree.append(')');
+    }
+
+    private static final String[] PHRASES = {"S", "NP", "VP", "PP", "X"};
+    private static final String[] TAGS = {"NN", "JJ", "DT", "VB", "IN"};
+    private static final int WORDS = 30;
+    private static final int MAX_DEPTH = 6;
+}
@@ -0,0 +1,192 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import reck.util.FeatureDictionary;
+
+/**
+ * An instance line of SVM-light-TK, as written by writeToKernelFile,
+ * "label |BT| tree |BT| tree ... |ET| vector |BV| vector ... |EV|".
+ * <p>
+ * The vectors are sparse, "index:value" with increasing indexes. The
+ * kernels of each tree and vector with itself are kept once computed by
+ * the {@link TreeKernelEngine} which parsed the line, for the normalization.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelExample {
+
+    public static final String BEGIN_TREE = "|BT|";
+    public static final String END_TREES = "|ET|";
+    public static final String BEGIN_VECTOR = "|BV|";
+    public static final String END_VECTORS = "|EV|";
+
+    /**
+     * Parse an instance line, numbering the labels and productions of its trees
+     * in the given dictionaries.
+     */
+    static KernelExample parse(String line, FeatureDictionary labels, FeatureDictionary productions) {
+        KernelExample example = new KernelExample();
+
+        int comment = line.indexOf('#');
+        if (comment != -1)
+            line = line.substring(0, comment);
+        line = line.trim();
+        int labelEnd = 0;
+        while (labelEnd < line.length() && !Character.isWhitespace(line.charAt(labelEnd)))
+            labelEnd++;
+        example.label = Double.parseDouble(line.substring(0, labelEnd));
+        String rest = line.substring(labelEnd);
+
+        ArrayList treeList = new ArrayList();
+        int endTrees = rest.indexOf(END_TREES);
+        if (rest.trim().startsWith(BEGIN_TREE) && endTrees != -1) {
+            String[] trees = split(rest.substring(rest.indexOf(BEGIN_TREE) + BEGIN_TREE.length(), endTrees), BEGIN_TREE);
+            for (int i = 0; i < trees.length; i++) {
+                String tree = trees[i].trim();
+                treeList.add((tree.length() == 0) ? null : KernelTree.parse(tree, labels, productions));
+            }
+            rest = rest.substring(endTrees + END_TREES.length());
+        }
+        example.trees = (KernelTree[])treeList.toArray(new KernelTree[treeList.size()]);
+
+        int endVectors = rest.indexOf(END_VECTORS);
+        if (endVectors != -1)
+            rest = rest.substring(0, endVectors);
+        String[] vectors = split(rest, BEGIN_VECTOR);
+        example.indexes = new int[vectors.length][];
+        example.values = new double[vectors.length][];
+        for (int i = 0; i < vectors.length; i++)
+            example.parseVector(i, vectors[i]);
+
+        example.treeNorms = new double[example.trees.length];
+        example.vectorNorms = new double[vectors.length];
+        return example;
+    }
+
+    private static String[] split(String s, String separator) {
+        ArrayList parts = new ArrayList();
+        int start = 0, end;
+        while ((end = s.indexOf(separator, start)) != -1) {
+            parts.add(s.substring(start, end));
+            start = end + separator.length();
+        }
+        parts.add(s.substring(start));
+        return (String[])parts.toArray(new String[parts.size()]);
+    }
+
+    private void parseVector(int i, String vector) {
+        String[] features = vector.trim().split("\\s+");
+        int n = 0;
+        int[] featureIndexes = new int[features.length];
+        double[] featureValues = new double[features.length];
+        for (int k = 0; k < features.length; k++) {
+            int colon = features[k].indexOf(':');
+            if (colon <= 0)
+                continue;
+            String index = features[k].substring(0, colon);
+            if (index.equals("qid"))
+                continue;
+            featureIndexes[n] = Integer.parseInt(index);
+            featureValues[n++] = Double.parseDouble(features[k].substring(colon + 1));
+        }
+
+        boolean sorted = true;
+        for (int k = 1; k < n; k++)
+            sorted &= featureIndexes[k - 1] < featureIndexes[k];
+        if (!sorted) {
+            long[] order = new long[n];
+            for (int k = 0; k < n; k++)
+                order[k] = ((long)featureIndexes[k] << 32) | k;
+            Arrays.sort(order);
+            int[] sortedIndexes = new int[n];
+            double[] sortedValues = new double[n];
+            for (int k = 0; k < n; k++) {
+                sortedIndexes[k] = (int)(order[k] >> 32);
+                sortedValues[k] = featureValues[(int)order[k]];
+            }
+            featureIndexes = sortedIndexes;
+            featureValues = sortedValues;
+        }
+
+        indexes[i] = Arrays.copyOf(featureIndexes, n);
+        values[i] = Arrays.copyOf(featureValues, n);
+    }
+
+    /**
+     * Dot product of two sparse vectors.
+     */
+    public static double dot(int[] indexes1, double[] values1, int[] indexes2, double[] values2) {
+        double sum = 0;
+        int i = 0, j = 0;
+        while (i < indexes1.length && j < indexes2.length) {
+            if (indexes1[i] == indexes2[j])
+                sum += values1[i++] * values2[j++];
+            else if (indexes1[i] < indexes2[j])
+                i++;
+            else
+                j++;
+        }
+        return sum;
+    }
+
+    public double getLabel() {
+        return label;
+    }
+
+    public int getNbrTrees() {
+        return trees.length;
+    }
+
+    /** The i-th tree, null if it is missing or empty */
+    public KernelTree getTree(int i) {
+        return (i < trees.length) ? trees[i] : null;
+    }
+
+    public int getNbrVectors() {
+        return indexes.length;
+    }
+
+    public int[] getIndexes(int i) {
+        return indexes[i];
+    }
+
+    public double[] getValues(int i) {
+        return values[i];
+    }
+
+    private double label = 0;
+    private KernelTree[] trees = null;
+    private int[][] indexes = null;
+    private double[][] values = null;
+
+    /** Kernels of the trees and vectors with themselves */
+    double[] treeNorms = null;
+    double[] vectorNorms = null;
+
+    /** The engine which parsed the line */
+    TreeKernelEngine engine = null;
+}
@@ -0,0 +1,190 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+
+/**
+ * A model written by svm_learn or by the {@link KernelTrainer}, its
+ * threshold b and its support vectors, each written with alpha * y as its
+ * label, to classify instances as svm_classify does:
+ * sum(alpha * y * K(sv, x)) - b.
+ * <p>
+ * The support vectors are parsed by the {@link TreeKernelEngine} only
+ * when a kernel has to be computed, not when it is read in a
+ * {@link GramMatrix}.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelModel {
+
+    /**
+     * Read a model, the kernels of which are computed by the given engine.
+     */
+    public KernelModel(TreeKernelEngine engine, String modelFilename) throws IOException {
+        this.engine = engine;
+        ArrayList alphaList = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(modelFilename)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null && line.indexOf("threshold b") == -1)
+                ;
+            if (line == null)
+                throw new IllegalArgumentException("No threshold in the model " + modelFilename);
+            threshold = Double.parseDouble(line.substring(0, line.indexOf('#')).trim());
+            while ((line = reader.readLine()) != null) {
+                String sv = line.trim();
+                if (sv.length() == 0)
+                    continue;
+                int labelEnd = 0;
+                while (labelEnd < sv.length() && !Character.isWhitespace(sv.charAt(labelEnd)))
+                    labelEnd++;
+                alphaList.add(Double.valueOf(sv.substring(0, labelEnd)));
+                lineList.add(sv);
+            }
+        }
+        finally {
+            reader.close();
+        }
+
+        alphas = new double[alphaList.size()];
+        for (int k = 0; k < alphas.length; k++)
+            alphas[k] = ((Double)alphaList.get(k)).doubleValue();
+        supportVectors = new KernelExample[alphas.length];
+    }
+
+    /**
+     * A model trained on the instances of a matrix, the kernels of which
+     * are computed by the given engine.
+     * @param alphas    alpha * y of the support vectors
+     * @param instances the instances of the support vectors
+     */
+    public KernelModel(TreeKernelEngine engine, double[] alphas, String[] instances, double threshold) {
+        this.engine = engine;
+        this.alphas = alphas;
+        this.threshold = threshold;
+        for (int k = 0; k < instances.length; k++)
+            lineList.add(alphas[k] + " " + instances[k]);
+        supportVectors = new KernelExample[alphas.length];
+    }
+
+    /**
+     * Write the model, the threshold and the support vectors as svm_learn
+     * does, to be read again by this class.
+     */
+    public void write(String modelFilename) throws IOException {
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(modelFilename)));
+        try {
+            writer.write("RECK KernelTrainer # written by reck.kernels.KernelTrainer, read by reck.kernels.KernelModel");
+            writer.newLine();
+            writer.write((alphas.length + 1) + " # number of support vectors plus 1");
+            writer.newLine();
+            writer.write(threshold + " # threshold b, each following line is a SV (starting with alpha*y)");
+            writer.newLine();
+            for (int k = 0; k < lineList.size(); k++) {
+                writer.write((String)lineList.get(k));
+                writer.newLine();
+            }
+        }
+        finally {
+            writer.close();
+        }
+    }
+
+    public int getNbrSupportVectors() {
+        return alphas.length;
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * The instance of the k-th support vector, as {@link GramMatrix#instanceOf}.
+     */
+    public String getInstance(int k) {
+        return GramMatrix.instanceOf((String)lineList.get(k));
+    }
+
+    /**
+     * The k-th support vector, parsed on first use.
+     */
+    public synchronized KernelExample getSupportVector(int k) {
+        if (supportVectors[k] == null)
+            supportVectors[k] = engine.parse((String)lineList.get(k));
+        return supportVectors[k];
+    }
+
+    /**
+     * The rows of the support vectors in a matrix, -1 for those which are
+     * not there.
+     */
+    public int[] findRows(GramMatrix gram) {
+        int[] rows = new int[alphas.length];
+        for (int k = 0; k < rows.length; k++)
+            rows[k] = gram.indexOf(getInstance(k));
+        return rows;
+    }
+
+    /**
+     * The prediction of svm_classify for an instance parsed by the engine.
+     */
+    public double classify(KernelExample x) {
+        double prediction = -threshold;
+        for (int k = 0; k < alphas.length; k++)
+            prediction += alphas[k] * engine.kernel(getSupportVector(k), x);
+        return prediction;
+    }
+
+    /**
+     * The prediction of svm_classify for an instance of a matrix, the
+     * kernels of which with the support vectors are all read there.
+     * @param rows the rows of the support vectors, from <code>findRows</code>
+     * @param row  the row of the instance
+     */
+    public double classify(GramMatrix gram, int[] rows, int row) {
+        double prediction = -threshold;
+        for (int k = 0; k < alphas.length; k++) {
+            if (rows[k] == -1)
+                throw new IllegalArgumentException("The support vector " + k + " is not in the matrix");
+            prediction += alphas[k] * gram.get(rows[k], row);
+        }
+        return prediction;
+    }
+
+    private final TreeKernelEngine engine;
+    private double threshold = 0;
+
+    /** alpha * y of the support vectors */
+    private double[] alphas = null;
+    private ArrayList lineList = new ArrayList();
+    private KernelExample[] supportVectors = null;
+}
@@ -0,0 +1,296 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+
+package reck.kernels;
+
+/**
+ * Train a binary classifier on the kernels of a {@link GramMatrix}, as
+ * svm_learn does on the kernels it computes: the dual problem of the soft
+ * margin SVM with a threshold,
+ * <pre>
+ * min 1/2 sum(a_i a_j y_i y_j K(i, j)) - sum(a_i),  0 &lt;= a_i &lt;= C,  sum(a_i y_i) = 0
+ * </pre>
+ * is solved by sequential minimal optimization, the working set of two
+ * instances being selected with second order information as in LIBSVM,
+ * until the KKT conditions hold within epsilon, the option -e of svm_learn.
+ * <p>
+ * The kernels are read in the matrix, computed once for all the relation
+ * types and all the folds, and never computed here.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelTrainer {
+
+    /** Default epsilon, as svm_learn */
+    public static final double EPSILON = 0.001;
+
+    private static final double TAU = 1e-12;
+
+    /**
+     * A trainer on the instances of a matrix with the given rows, and their
+     * labels, positive for the instances of the class.
+     */
+    public KernelTrainer(GramMatrix gram, int[] rows, double[] labels) {
+        if (rows.length != labels.length)
+            throw new IllegalArgumentException(labels.length + " labels for " + rows.length + " instances");
+        this.gram = gram;
+        this.rows = rows;
+        this.y = new double[rows.length];
+        for (int i = 0; i < rows.length; i++)
+            y[i] = (labels[i] > 0) ? 1 : -1;
+    }
+
+    /**
+     * Set the trade-off C between training error and margin, the option -c
+     * of svm_learn, [avg. sqrt(K(x, x))]^-2 as its default if it is 0.
+     */
+    public void setCost(double cost) {
+        this.cost = cost;
+    }
+
+    public void setEpsilon(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    /** Number of iterations of the last training */
+    public int getNbrIterations() {
+        return nbr_iterations;
+    }
+
+    /**
+     * Train a model, the support vectors of which are the instances of the
+     * matrix with a non-zero alpha.
+     */
+    public KernelModel train(TreeKernelEngine engine) {
+        int n = rows.length;
+        double[] diagonal = new double[n];
+        double deltaSum = 0;
+        for (int i = 0; i < n; i++) {
+            diagonal[i] = gram.get(rows[i], rows[i]);
+            deltaSum += Math.sqrt(Math.max(diagonal[i], 0));
+        }
+        double c = cost;
+        if (c <= 0)
+            c = (deltaSum > 0) ? (n * (double)n) / (deltaSum * deltaSum) : 1;
+
+        double[] alpha = new double[n];
+        double[] gradient = new double[n];
+        for (int i = 0; i < n; i++)
+            gradient[i] = -1;
+        double[] Qi = new double[n], Qj = new double[n];
+
+        int maxIterations = (n > Integer.MAX_VALUE / 100) ? Integer.MAX_VALUE : Math.max(10000000, 100 * n);
+        nbr_iterations = 0;
+        while (nbr_iterations < maxIterations) {
+            // i maximizes -y_t G_t among the alphas which can move up
+            int i = -1;
+            double gMax = Double.NEGATIVE_INFINITY;
+            for (int t = 0; t < n; t++) {
+                if ((y[t] > 0) ? alpha[t] < c : alpha[t] > 0) {
+                    if (-y[t] * gradient[t] >= gMax) {
+                        gMax = -y[t] * gradient[t];
+                        i = t;
+                    }
+                }
+            }
+            if (i == -1)
+                break;
+            column(i, Qi);
+
+            // j decreases the objective the most among those which can move down
+            int j = -1;
+            double gMax2 = Double.NEGATIVE_INFINITY;
+            double minObjective = Double.POSITIVE_INFINITY;
+            for (int t = 0; t < n; t++) {
+                if ((y[t] > 0) ? alpha[t] > 0 : alpha[t] < c) {
+                    double yG = y[t] * gradient[t];
+                    if (yG >= gMax2)
+                        gMax2 = yG;
+                    double gradientDiff = gMax + yG;
+                    if (gradientDiff > 0) {
+                        double quad = diagonal[i] + diagonal[t] - 2 * y[i] * y[t] * Qi[t];
+                        double objective = -(gradientDiff * gradientDiff) / ((quad > 0) ? quad : TAU);
+                        if (objective <= minObjective) {
+                            minObjective = objective;
+                            j = t;
+                        }
+                    }
+                }
+            }
+            if (gMax + gMax2 < epsilon || j == -1)
+                break;
+            column(j, Qj);
+            nbr_iterations++;
+
+            // Qi and Qj hold y_i y_t K(i, t) and y_j y_t K(j, t)
+            double oldAlphaI = alpha[i], oldAlphaJ = alpha[j];
+            if (y[i] != y[j]) {
+                double quad = diagonal[i] + diagonal[j] + 2 * Qi[j];
+                double delta = (-gradient[i] - gradient[j]) / ((quad > 0) ? quad : TAU);
+                double diff = alpha[i] - alpha[j];
+                alpha[i] += delta;
+                alpha[j] += delta;
+                if (diff > 0) {
+                    if (alpha[j] < 0) {
+                        alpha[j] = 0;
+                        alpha[i] = diff;
+                    }
+                }
+                else if (alpha[i] < 0) {
+                    alpha[i] = 0;
+                    alpha[j] = -diff;
+                }
+                if (diff > 0) {
+                    if (alpha[i] > c) {
+                        alpha[i] = c;
+                        alpha[j] = c - diff;
+                    }
+                }
+                else if (alpha[j] > c) {
+                    alpha[j] = c;
+                    alpha[i] = c + diff;
+                }
+            }
+            else {
+                double quad = diagonal[i] + diagonal[j] - 2 * Qi[j];
+                double delta = (gradient[i] - gradient[j]) / ((quad > 0) ? quad : TAU);
+                double sum = alpha[i] + alpha[j];
+                alpha[i] -= delta;
+                alpha[j] += delta;
+                if (sum > c) {
+                    if (alpha[i] > c) {
+                        alpha[i] = c;
+                        alpha[j] = sum - c;
+                    }
+                    if (alpha[j] > c) {
+                        alpha[j] = c;
+                        alpha[i] = sum - c;
+                    }
+                }
+                else {
+                    if (alpha[j] < 0) {
+                        alpha[j] = 0;
+                        alpha[i] = sum;
+                    }
+                    if (alpha[i] < 0) {
+                        alpha[i] = 0;
+                        alpha[j] = sum;
+                    }
+                }
+            }
+
+            double deltaI = alpha[i] - oldAlphaI, deltaJ = alpha[j] - oldAlphaJ;
+            for (int t = 0; t < n; t++)
+                gradient[t] += Qi[t] * deltaI + Qj[t] * deltaJ;
+        }
+
+        return new KernelModel(engine, supportVectors(alpha), supportVectorInstances(alpha), 
+                threshold(alpha, gradient, c));
+    }
+
+    /** y_i y_t K(i, t) for all t */
+    private void column(int i, double[] Q) {
+        for (int t = 0; t < rows.length; t++)
+            Q[t] = y[i] * y[t] * gram.get(rows[i], rows[t]);
+    }
+
+    /**
+     * The threshold b, the mean of y_i G_i over the free alphas, the middle
+     * of their bounds if there is none.
+     */
+    private double threshold(double[] alpha, double[] gradient, double c) {
+        double upper = Double.POSITIVE_INFINITY, lower = Double.NEGATIVE_INFINITY;
+        double freeSum = 0;
+        int nbr_free = 0;
+        boolean positive = false, negative = false;
+        for (int i = 0; i < alpha.length; i++) {
+            double yG = y[i] * gradient[i];
+            if (y[i] > 0)
+                positive = true;
+            else
+                negative = true;
+            if (alpha[i] >= c) {
+                if (y[i] < 0)
+                    upper = Math.min(upper, yG);
+                else
+                    lower = Math.max(lower, yG);
+            }
+            else if (alpha[i] <= 0) {
+                if (y[i] > 0)
+                    upper = Math.min(upper, yG);
+                else
+                    lower = Math.max(lower, yG);
+            }
+            else {
+                nbr_free++;
+                freeSum += yG;
+            }
+        }
+        // instances of one class only, all of them are given that class
+        if (!negative)
+            return -1;
+        if (!positive)
+            return 1;
+        return (nbr_free > 0) ? freeSum / nbr_free : (upper + lower) / 2;
+    }
+
+    /** alpha * y of the support vectors */
+    private double[] supportVectors(double[] alpha) {
+        int nbr_sv = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            if (alpha[i] > 0)
+                nbr_sv++;
+        }
+        double[] alphas = new double[nbr_sv];
+        for (int i = 0, k = 0; i < alpha.length; i++) {
+            if (alpha[i] > 0)
+                alphas[k++] = alpha[i] * y[i];
+        }
+        return alphas;
+    }
+
+    private String[] supportVectorInstances(double[] alpha) {
+        int nbr_sv = 0;
+        for (int i = 0; i < alpha.length; i++) {
+            if (alpha[i] > 0)
+                nbr_sv++;
+        }
+        String[] instances = new String[nbr_sv];
+        for (int i = 0, k = 0; i < alpha.length; i++) {
+            if (alpha[i] > 0)
+                instances[k++] = gram.getInstance(rows[i]);
+        }
+        return instances;
+    }
+
+    private final GramMatrix gram;
+    private final int[] rows;
+
+    /** +1 or -1 */
+    private final double[] y;
+
+    private double cost = 0;
+    private double epsilon = EPSILON;
+    private int nbr_iterations = 0;
+}
@@ -0,0 +1,215 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import reck.util.FeatureDictionary;
+
+/**
+ * A node of a tree read from an instance line, in the bracketed format
+ * of SVM-light-TK, "(S (NP (D a) (N cat)) (VP (V sleeps)))", where the
+ * words may also be written as leaves, "(D (a))".
+ * <p>
+ * The nodes of a tree are numbered in preorder, the root being 0. Their
+ * labels and productions are numbered in the dictionaries of the
+ * {@link TreeKernelEngine} which parsed the tree, so only the trees of one
+ * engine can be compared. The root keeps them in arrays with the nodes sorted by production
+ * and by label, so that {@link TreeKernelEvaluator} finds the matching
+ * nodes of two trees by merging.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelTree {
+
+    private KernelTree(String label, int number) {
+        this.label = label;
+        this.number = number;
+    }
+
+    /**
+     * Parse a tree in bracketed format, numbering its labels and productions
+     * in the given dictionaries.
+     */
+    public static KernelTree parse(String s, FeatureDictionary labels, FeatureDictionary productions) {
+        ArrayList nodeList = new ArrayList();
+        int[] pos = new int[] {skipSpaces(s, 0)};
+        KernelTree root = parseNode(s, pos, nodeList);
+        if (skipSpaces(s, pos[0]) != s.length())
+            throw new IllegalArgumentException("Wrong tree: " + s);
+        root.nodes = (KernelTree[])nodeList.toArray(new KernelTree[nodeList.size()]);
+        root.indexNodes(labels, productions);
+        return root;
+    }
+
+    private static KernelTree parseNode(String s, int[] pos, ArrayList nodeList) {
+        if (pos[0] >= s.length() || s.charAt(pos[0]) != '(')
+            throw new IllegalArgumentException("Wrong tree: " + s);
+        int i = skipSpaces(s, pos[0] + 1);
+
+        int start = i;
+        i = skipLabel(s, i);
+        KernelTree node = new KernelTree(s.substring(start, i), nodeList.size());
+        nodeList.add(node);
+
+        // children are subtrees or words, "(D a)"
+        ArrayList kids = new ArrayList();
+        i = skipSpaces(s, i);
+        while (i < s.length() && s.charAt(i) != ')') {
+            if (s.charAt(i) == '(') {
+                pos[0] = i;
+                kids.add(parseNode(s, pos, nodeList));
+                i = pos[0];
+            }
+            else {
+                start = i;
+                i = skipLabel(s, i);
+                KernelTree leaf = new KernelTree(s.substring(start, i), nodeList.size());
+                leaf.children = new KernelTree[0];
+                nodeList.add(leaf);
+                kids.add(leaf);
+            }
+            i = skipSpaces(s, i);
+        }
+        if (i >= s.length() || s.charAt(i) != ')')
+            throw new IllegalArgumentException("Wrong tree: " + s);
+        pos[0] = i + 1;
+
+        node.children = (KernelTree[])kids.toArray(new KernelTree[kids.size()]);
+        if (node.children.length > 0) {
+            StringBuffer production = new StringBuffer(node.label).append(" ->");
+            for (int k = 0; k < node.children.length; k++)
+                production.append(' ').append(node.children[k].label);
+            node.production = production.toString();
+        }
+        return node;
+    }
+
+    /**
+     * Number the labels and productions of the nodes, and sort the nodes.
+     */
+    private void indexNodes(FeatureDictionary labels, FeatureDictionary productions) {
+        int n = nodes.length;
+        labelIds = new int[n];
+        productionIds = new int[n];
+        synchronized (labels) {
+            for (int i = 0; i < n; i++) {
+                labelIds[i] = labels.add(nodes[i].label);
+                productionIds[i] = nodes[i].isLeaf() ? -1 : productions.add(nodes[i].production);
+            }
+        }
+
+        childStarts = new int[n + 1];
+        for (int i = 0; i < n; i++)
+            childStarts[i + 1] = childStarts[i] + nodes[i].children.length;
+        childNodes = new int[childStarts[n]];
+        for (int i = 0; i < n; i++) {
+            for (int k = 0; k < nodes[i].children.length; k++)
+                childNodes[childStarts[i] + k] = nodes[i].children[k].number;
+        }
+
+        byLabel = sortNodes(labelIds);
+        byProduction = sortNodes(productionIds);
+    }
+
+    /**
+     * The nodes with a key, sorted by key and then by number.
+     */
+    private static int[] sortNodes(int[] keys) {
+        long[] order = new long[keys.length];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] >= 0)
+                order[n++] = ((long)keys[i] << 32) | i;
+        }
+        Arrays.sort(order, 0, n);
+        int[] sorted = new int[n];
+        for (int i = 0; i < n; i++)
+            sorted[i] = (int)order[i];
+        return sorted;
+    }
+
+    private static int skipLabel(String s, int i) {
+        while (i < s.length() && s.charAt(i) != '(' && s.charAt(i) != ')'
+                && !Character.isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    private static int skipSpaces(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i)))
+            i++;
+        return i;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /** The label and the labels of the children, null for a leaf */
+    public String getProduction() {
+        return production;
+    }
+
+    public KernelTree[] getChildren() {
+        return children;
+    }
+
+    public boolean isLeaf() {
+        return children.length == 0;
+    }
+
+    /** Preorder number of the node in its tree */
+    public int getNumber() {
+        return number;
+    }
+
+    /** All nodes of the tree in preorder, only set at the root */
+    public KernelTree[] getNodes() {
+        return nodes;
+    }
+
+    public String toString() {
+        StringBuffer sb = new StringBuffer("(").append(label);
+        for (int i = 0; i < children.length; i++)
+            sb.append(' ').append(children[i].toString());
+        return sb.append(')').toString();
+    }
+
+    private String label = null;
+    private String production = null;
+    private KernelTree[] children = null;
+    private int number = 0;
+    private KernelTree[] nodes = null;
+
+    /** Set at the root, indexed by the numbers of the nodes */
+    int[] labelIds = null;
+    int[] productionIds = null;
+    int[] childStarts = null;
+
+    /** The children of node i from childStarts[i] to childStarts[i + 1] */
+    int[] childNodes = null;
+    int[] byLabel = null;
+    int[] byProduction = null;
+}
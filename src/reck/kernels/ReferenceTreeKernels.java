@@ -0,0 +1,170 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.util.Arrays;
+
+/**
+ * The tree kernels computed from their recursive definitions, on the
+ * labels and productions of the nodes, against which {@link KernelCheck}
+ * checks the values of {@link TreeKernelEvaluator}.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+class ReferenceTreeKernels {
+
+    private ReferenceTreeKernels() {
+    }
+
+    /**
+     * Sum of delta over the pairs of nodes with the same production,
+     * delta(n1, n2) = lambda * prod(sigma + delta(child1, child2)).
+     */
+    static double subsetTreeKernel(KernelTree t1, KernelTree t2, double lambda, double sigma) {
+        KernelTree[] nodes1 = t1.getNodes(), nodes2 = t2.getNodes();
+        double[][] deltas = newDeltas(nodes1.length, nodes2.length);
+        double k = 0;
+        for (int i = 0; i < nodes1.length; i++) {
+            if (nodes1[i].isLeaf())
+                continue;
+            for (int j = 0; j < nodes2.length; j++) {
+                if (nodes1[i].getProduction().equals(nodes2[j].getProduction()))
+                    k += deltaSST(nodes1[i], nodes2[j], lambda, sigma, deltas);
+            }
+        }
+        return k;
+    }
+
+    /** Both nodes have the same production */
+    private static double deltaSST(KernelTree n1, KernelTree n2, double lambda, double sigma, double[][] deltas) {
+        double delta = deltas[n1.getNumber()][n2.getNumber()];
+        if (delta >= 0)
+            return delta;
+
+        delta = lambda;
+        KernelTree[] kids1 = n1.getChildren(), kids2 = n2.getChildren();
+        for (int i = 0; i < kids1.length; i++) {
+            if (kids1[i].isLeaf() && kids2[i].isLeaf())
+                continue;
+            if (kids1[i].isLeaf() || kids2[i].isLeaf()
+                    || !kids1[i].getProduction().equals(kids2[i].getProduction()))
+                delta *= sigma;
+            else
+                delta *= sigma + deltaSST(kids1[i], kids2[i], lambda, sigma, deltas);
+        }
+        return deltas[n1.getNumber()][n2.getNumber()] = delta;
+    }
+
+    /**
+     * Sum of delta over the pairs of nodes with the same label,
+     * delta(n1, n2) = mu * (lambda^2 + sum over the child subsequences
+     * J1, J2 of the same length of lambda^(g(J1) + g(J2)) * prod delta),
+     * g(J) being the number of children skipped between the first and the
+     * last of J.
+     */
+    static double partialTreeKernel(KernelTree t1, KernelTree t2, double lambda, double mu) {
+        KernelTree[] nodes1 = t1.getNodes(), nodes2 = t2.getNodes();
+        double[][] deltas = newDeltas(nodes1.length, nodes2.length);
+        double k = 0;
+        for (int i = 0; i < nodes1.length; i++) {
+            for (int j = 0; j < nodes2.length; j++) {
+                if (nodes1[i].getLabel().equals(nodes2[j].getLabel()))
+                    k += deltaPT(nodes1[i], nodes2[j], lambda, mu, deltas);
+            }
+        }
+        return k;
+    }
+
+    /** Both nodes have the same label */
+    private static double deltaPT(KernelTree n1, KernelTree n2, double lambda, double mu, double[][] deltas) {
+        double delta = deltas[n1.getNumber()][n2.getNumber()];
+        if (delta >= 0)
+            return delta;
+
+        if (n1.isLeaf() || n2.isLeaf())
+            delta = mu * lambda * lambda;
+        else
+            delta = mu * (lambda * lambda + subsequences(n1.getChildren(), n2.getChildren(), lambda, mu, deltas));
+        return deltas[n1.getNumber()][n2.getNumber()] = delta;
+    }
+
+    /**
+     * The subsequence kernel of the labels of the children of both roots,
+     * summed over all lengths, where a common subsequence spanning l1 and
+     * l2 nodes weighs lambda^(l1 + l2).
+     */
+    static double stringKernel(KernelTree t1, KernelTree t2, double lambda) {
+        return subsequences(t1.getChildren(), t2.getChildren(), lambda, -1, null);
+    }
+
+    /**
+     * Sum over the common subsequences of labels of two sequences of nodes,
+     * each pair of nodes weighing deltaPT for the partial tree kernel, or
+     * lambda^2 for the string kernel when deltas is null, and each skipped
+     * node lambda.
+     */
+    private static double subsequences(KernelTree[] s1, KernelTree[] s2, double lambda, double mu, double[][] deltas) {
+        int n = s1.length, m = s2.length, p = Math.min(n, m);
+        double[][] dps = new double[n + 1][m + 1], dp = new double[n + 1][m + 1];
+        double[][] matches = new double[n + 1][m + 1];
+        double lambda2 = lambda * lambda;
+
+        double k = 0;
+        for (int i = 1; i <= n; i++) {
+            for (int j = 1; j <= m; j++) {
+                if (s1[i - 1].getLabel().equals(s2[j - 1].getLabel())) {
+                    matches[i][j] = (deltas == null) ? lambda2 : deltaPT(s1[i - 1], s2[j - 1], lambda, mu, deltas);
+                    dps[i][j] = matches[i][j];
+                    k += dps[i][j];
+                }
+            }
+        }
+
+        // dp[i][j] sums the subsequences of length l - 1 ending before i and j
+        for (int l = 1; l < p; l++) {
+            for (int j = 0; j <= m; j++)
+                dp[l - 1][j] = 0;
+            for (int i = 0; i <= n; i++)
+                dp[i][l - 1] = 0;
+
+            for (int i = l; i <= n; i++) {
+                for (int j = l; j <= m; j++) {
+                    dp[i][j] = dps[i][j] + lambda * dp[i - 1][j] + lambda * dp[i][j - 1] - lambda2 * dp[i - 1][j - 1];
+                    if (matches[i][j] != 0) {
+                        dps[i][j] = matches[i][j] * dp[i - 1][j - 1];
+                        k += dps[i][j];
+                    }
+                }
+            }
+        }
+        return k;
+    }
+
+    private static double[][] newDeltas(int n, int m) {
+        double[][] deltas = new double[n][m];
+        for (int i = 0; i < n; i++)
+            Arrays.fill(deltas[i], -1);
+        return deltas;
+    }
+}
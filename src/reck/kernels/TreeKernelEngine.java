@@ -0,0 +1,310 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import reck.util.FeatureDictionary;
+
+/**
+ * Evaluate the composite kernels of learning/CK1 and learning/CK1_SSK
+ * on the instances written by writeToKernelFile and writeToKernelFile_All,
+ * as the custom kernel of SVM-light-TK does.
+ * <p>
+ * The tree kernels are the subtree and subset tree kernels of Collins
+ * and Duffy, the partial tree kernel of Moschitti and the gap-weighted
+ * subsequence kernel on the children of the root, each configured by a
+ * line of tree_kernels.param, and evaluated by a {@link TreeKernelEvaluator}
+ * of the calling thread. The vectors are compared by a linear or a
+ * polynomial kernel, the options -S, -d, -s and -r of svm_learn, and
+ * normalized as set by its option -N.
+ * <p>
+ * An engine can be used by several threads: instances are parsed under
+ * the lock of its dictionaries, which grow with the labels and productions
+ * of new trees, and compared with the evaluator of each thread.
+ * <p>
+ * The values have not been compared yet with those of the C build of
+ * SVM-light-TK, so the engine cannot stand in for it.
+ * {@link KernelCheck#checkFixtures} compares them with the predictions of
+ * svm_classify on the instances of learning/fixtures, once the models and
+ * predictions of SVM-light-TK are written there; until it passes, nothing
+ * uses the engine in place of svm_learn and svm_classify.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class TreeKernelEngine {
+
+    /** Composite kernels */
+    public static final int CK1 = 0;
+    public static final int CK1_SSK = 1;
+
+    /** Vector kernels */
+    public static final int LINEAR = 0;
+    public static final int POLYNOMIAL = 1;
+
+    /** Tree of the composite kernels, and of the sequences for CK1_SSK */
+    public static final int CONSTITUENT_TREE = 0;
+    public static final int FIRST_SEQUENCE = 2;
+    public static final int LAST_SEQUENCE = 7;
+
+    /** Normalizations, as the option -N of svm_learn */
+    public static final int NO_NORMALIZATION = 0;
+    public static final int TREE_NORMALIZATION = 1;
+    public static final int VECTOR_NORMALIZATION = 2;
+    public static final int FULL_NORMALIZATION = 3;
+
+    /**
+     * An engine for the trees configured by the given parameters,
+     * with the option -N given to svm_learn. The vectors are normalized with
+     * -N 2 and 3, each tree as set in its parameters.
+     */
+    public TreeKernelEngine(TreeKernelParameters[] params, int composite, int normalization) {
+        for (int i = 0; i < params.length; i++)
+            checkParameters(params[i]);
+        if (normalization < NO_NORMALIZATION || normalization > FULL_NORMALIZATION)
+            throw new IllegalArgumentException("Unknown normalization " + normalization);
+        this.params = params;
+        this.composite = composite;
+        this.vectorNormalization = (normalization == VECTOR_NORMALIZATION || normalization == FULL_NORMALIZATION);
+    }
+
+    /**
+     * An engine for the trees configured in a tree_kernels.param file.
+     */
+    public TreeKernelEngine(String paramFilename, int composite, int normalization) throws IOException {
+        this(TreeKernelParameters.read(paramFilename), composite, normalization);
+    }
+
+    /**
+     * Reject the kernels and generalities which are not implemented here,
+     * rather than compute other values than SVM-light-TK.
+     * The generality is only supported as in learning/tree_kernels.param,
+     * equal to the kernel type.
+     */
+    private static void checkParameters(TreeKernelParameters p) {
+        switch (p.kernelType) {
+            case TreeKernelParameters.NOKERNEL:
+                return;
+            case TreeKernelParameters.SUBTREE_KERNEL:
+            case TreeKernelParameters.SUBSET_TREE_KERNEL:
+            case TreeKernelParameters.PARTIAL_TREE_KERNEL:
+            case TreeKernelParameters.STRING_KERNEL:
+                if (p.generality != p.kernelType)
+                    throw new IllegalArgumentException("Unsupported generality " + p.generality
+                            + " of the tree kernel " + p.kernelType);
+                return;
+            default:
+                throw new IllegalArgumentException("Unsupported tree kernel " + p.kernelType);
+        }
+    }
+
+    /**
+     * Set the kernel of the vectors, (coefLin * a.b + coefConst)^degree
+     * for a polynomial kernel.
+     */
+    public void setVectorKernel(int vectorKernel, int degree, double coefLin, double coefConst) {
+        this.vectorKernel = vectorKernel;
+        this.degree = degree;
+        this.coefLin = coefLin;
+        this.coefConst = coefConst;
+    }
+
+    /**
+     * A description of the kernel computed by this engine, the kernels of
+     * two engines with the same description are the same.
+     */
+    public String getDescription() {
+        StringBuffer sb = new StringBuffer();
+        sb.append("composite=").append(composite);
+        sb.append(" vectorKernel=").append(vectorKernel);
+        if (vectorKernel == POLYNOMIAL)
+            sb.append(" (").append(coefLin).append(",").append(coefConst).append(",").append(degree).append(")");
+        sb.append(" vectorNormalization=").append(vectorNormalization);
+        for (int i = 0; i < params.length; i++)
+            sb.append(" ").append(params[i]);
+        return sb.toString();
+    }
+
+    /** Number of trees with a kernel */
+    public int getNbrTrees() {
+        return params.length;
+    }
+
+    public TreeKernelParameters getParameters(int i) {
+        return params[i];
+    }
+
+    /**
+     * Parse an instance line and compute its norms.
+     */
+    public KernelExample parse(String line) {
+        KernelExample example = null;
+        synchronized (labelDictionary) {
+            example = KernelExample.parse(line, labelDictionary, productionDictionary);
+        }
+        example.engine = this;
+        for (int i = 0; i < example.treeNorms.length; i++)
+            example.treeNorms[i] = unnormalizedTreeKernel(example, example, i);
+        for (int i = 0; i < example.vectorNorms.length; i++)
+            example.vectorNorms[i] = unnormalizedVectorKernel(example, example, i);
+        return example;
+    }
+
+    /**
+     * Read the instances of a .train or .test file.
+     */
+    public ArrayList readExamples(String filename) throws IOException {
+        ArrayList examples = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() > 0 && !line.startsWith("#"))
+                    examples.add(parse(line));
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return examples;
+    }
+
+    /**
+     * The composite kernel of two instances parsed by this engine.
+     */
+    public double kernel(KernelExample a, KernelExample b) {
+        double vectors = vectorKernel(a, b, 0) + vectorKernel(a, b, 1);
+        double ct = weight(CONSTITUENT_TREE) * treeKernel(a, b, CONSTITUENT_TREE);
+
+        switch (composite) {
+            case CK1:
+                return 0.23 * vectors * vectors + 0.77 * ct;
+            case CK1_SSK:
+                // the dependency tree, tree 1, is not part of the kernel
+                double trees = ct;
+                for (int i = FIRST_SEQUENCE; i <= LAST_SEQUENCE; i++)
+                    trees += weight(i) * treeKernel(a, b, i);
+                double alpha = 0.2;
+                return (1 - alpha) * trees + alpha * vectors * vectors;
+            default:
+                throw new IllegalStateException("Unknown composite kernel " + composite);
+        }
+    }
+
+    private double weight(int i) {
+        return (i < params.length) ? params[i].weight : 0;
+    }
+
+    /**
+     * The kernel of the i-th trees, normalized if set in its parameters.
+     */
+    public double treeKernel(KernelExample a, KernelExample b, int i) {
+        checkEngine(a, b);
+        if (i >= params.length || i >= a.treeNorms.length || i >= b.treeNorms.length)
+            return 0;
+        double k = unnormalizedTreeKernel(a, b, i);
+        if (!params[i].normalization || k == 0)
+            return k;
+        return k / Math.sqrt(a.treeNorms[i] * b.treeNorms[i]);
+    }
+
+    /**
+     * The kernel of the i-th vectors, normalized if set.
+     */
+    public double vectorKernel(KernelExample a, KernelExample b, int i) {
+        if (i >= a.vectorNorms.length || i >= b.vectorNorms.length)
+            return 0;
+        double k = unnormalizedVectorKernel(a, b, i);
+        if (!vectorNormalization || k == 0)
+            return k;
+        return k / Math.sqrt(a.vectorNorms[i] * b.vectorNorms[i]);
+    }
+
+    /** The labels of trees are only numbered alike in the trees of one engine */
+    private void checkEngine(KernelExample a, KernelExample b) {
+        if (a.engine != this || b.engine != this)
+            throw new IllegalArgumentException("The instances were not parsed by this engine");
+    }
+
+    private double unnormalizedVectorKernel(KernelExample a, KernelExample b, int i) {
+        double dot = KernelExample.dot(a.getIndexes(i), a.getValues(i), b.getIndexes(i), b.getValues(i));
+        if (vectorKernel == POLYNOMIAL)
+            return Math.pow(coefLin * dot + coefConst, degree);
+        return dot;
+    }
+
+    private double unnormalizedTreeKernel(KernelExample a, KernelExample b, int i) {
+        if (i >= params.length)
+            return 0;
+        KernelTree t1 = a.getTree(i), t2 = b.getTree(i);
+        if (t1 == null || t2 == null)
+            return 0;
+        TreeKernelParameters p = params[i];
+
+        switch (p.kernelType) {
+            case TreeKernelParameters.NOKERNEL:
+                return 0;
+            case TreeKernelParameters.SUBTREE_KERNEL:
+                return evaluator().subsetTreeKernel(t1, t2, p.lambda, 0);
+            case TreeKernelParameters.SUBSET_TREE_KERNEL:
+                return evaluator().subsetTreeKernel(t1, t2, p.lambda, 1);
+            case TreeKernelParameters.PARTIAL_TREE_KERNEL:
+                return evaluator().partialTreeKernel(t1, t2, p.lambda, p.mu);
+            case TreeKernelParameters.STRING_KERNEL:
+                return evaluator().stringKernel(t1, t2, p.lambda);
+            default:
+                throw new IllegalArgumentException("Unsupported tree kernel " + p.kernelType);
+        }
+    }
+
+    /** The evaluator of the current thread */
+    private TreeKernelEvaluator evaluator() {
+        return (TreeKernelEvaluator)evaluators.get();
+    }
+
+    private TreeKernelParameters[] params = null;
+    private int composite = CK1;
+
+    private int vectorKernel = LINEAR;
+    private int degree = 1;
+    private double coefLin = 1;
+    private double coefConst = 1;
+    private boolean vectorNormalization = false;
+
+    /**
+     * The labels and productions of the trees parsed by this engine,
+     * both guarded by the lock of labelDictionary
+     */
+    private final FeatureDictionary labelDictionary = new FeatureDictionary();
+    private final FeatureDictionary productionDictionary = new FeatureDictionary();
+
+    private ThreadLocal evaluators = new ThreadLocal() {
+        protected Object initialValue() {
+            return new TreeKernelEvaluator();
+        }
+    };
+}
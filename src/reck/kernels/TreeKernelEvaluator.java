@@ -0,0 +1,224 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.util.Arrays;
+
+/**
+ * Evaluate the tree kernels on the arrays kept by the roots of
+ * {@link KernelTree}, as the fast tree kernel of Moschitti does.
+ * <p>
+ * The pairs of nodes with the same production, or label for the partial
+ * tree kernel, are found by merging the sorted nodes of both trees. Their
+ * deltas are computed from the last node to the root, the children of a
+ * node being numbered after it, so that the deltas of the children are
+ * known. The buffers grow with the largest trees seen and are reused, so
+ * an evaluator must only be used by one thread at a time.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class TreeKernelEvaluator {
+
+    /**
+     * Sum of delta over the pairs of nodes with the same production,
+     * delta(n1, n2) = lambda * prod(sigma + delta(child1, child2)).
+     * The subset tree kernel has sigma = 1, the subtree kernel sigma = 0.
+     */
+    public double subsetTreeKernel(KernelTree t1, KernelTree t2, double lambda, double sigma) {
+        int n1 = t1.labelIds.length, n2 = t2.labelIds.length;
+        reserve(n1, n2);
+        if (!matchNodes(t1.byProduction, t1.productionIds, t2.byProduction, t2.productionIds, n1))
+            return 0;
+
+        int[] productions1 = t1.productionIds, productions2 = t2.productionIds;
+        int[] starts1 = t1.childStarts, starts2 = t2.childStarts;
+        int[] kids1 = t1.childNodes, kids2 = t2.childNodes;
+        int[] matches2 = t2.byProduction;
+        double k = 0;
+        for (int i = n1 - 1; i >= 0; i--) {
+            for (int r = matchStarts[i]; r < matchEnds[i]; r++) {
+                int j = matches2[r];
+                double delta = lambda;
+                for (int c = starts1[i], d = starts2[j]; c < starts1[i + 1]; c++, d++) {
+                    int c1 = kids1[c], c2 = kids2[d];
+                    int production = productions1[c1];
+                    if (production != productions2[c2])
+                        delta *= sigma;
+                    else if (production != -1)
+                        delta *= sigma + deltas[c1 * n2 + c2];
+                }
+                deltas[i * n2 + j] = delta;
+                k += delta;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * Sum of delta over the pairs of nodes with the same label,
+     * delta(n1, n2) = mu * (lambda^2 + sum over the child subsequences
+     * J1, J2 of the same length of lambda^(g(J1) + g(J2)) * prod delta),
+     * g(J) being the number of children skipped between the first and the
+     * last of J, as in the recursive evaluation of Moschitti (ECML 2006).
+     * The closed form of that paper, lambda^(d(J1) + d(J2)) with d(J) the
+     * distance from the first to the last, weighs each further child
+     * lambda^2 less; which one the C build uses is left to {@link KernelCheck}.
+     */
+    public double partialTreeKernel(KernelTree t1, KernelTree t2, double lambda, double mu) {
+        int n1 = t1.labelIds.length, n2 = t2.labelIds.length;
+        reserve(n1, n2);
+        if (!matchNodes(t1.byLabel, t1.labelIds, t2.byLabel, t2.labelIds, n1))
+            return 0;
+
+        int[] starts1 = t1.childStarts, starts2 = t2.childStarts;
+        int[] matches2 = t2.byLabel;
+        double lambda2 = lambda * lambda;
+        double k = 0;
+        for (int i = n1 - 1; i >= 0; i--) {
+            for (int r = matchStarts[i]; r < matchEnds[i]; r++) {
+                int j = matches2[r];
+                int nbr_kids1 = starts1[i + 1] - starts1[i], nbr_kids2 = starts2[j + 1] - starts2[j];
+                double delta;
+                if (nbr_kids1 == 0 || nbr_kids2 == 0)
+                    delta = mu * lambda2;
+                else
+                    delta = mu * (lambda2 + subsequences(t1, starts1[i], nbr_kids1, t2, starts2[j], nbr_kids2, lambda, true));
+                deltas[i * n2 + j] = delta;
+                k += delta;
+            }
+        }
+        return k;
+    }
+
+    /**
+     * The subsequence kernel of the labels of the children of both roots,
+     * summed over all lengths, where a common subsequence spanning l1 and
+     * l2 nodes weighs lambda^(l1 + l2).
+     */
+    public double stringKernel(KernelTree t1, KernelTree t2, double lambda) {
+        int n = t1.childStarts[1], m = t2.childStarts[1];
+        if (n == 0 || m == 0)
+            return 0;
+        return subsequences(t1, 0, n, t2, 0, m, lambda, false);
+    }
+
+    /**
+     * Sum over the common subsequences of labels of two sequences of
+     * children, each pair of nodes weighing its delta for the partial tree
+     * kernel, or lambda^2 for the string kernel, and each skipped node lambda.
+     */
+    private double subsequences(KernelTree t1, int start1, int n, KernelTree t2, int start2, int m,
+            double lambda, boolean partialTrees) {
+        int width = m + 1, size = (n + 1) * width;
+        if (dps.length < size) {
+            dps = new double[size];
+            dp = new double[size];
+            weights = new double[size];
+        }
+        int[] labels1 = t1.labelIds, labels2 = t2.labelIds;
+        int[] kids1 = t1.childNodes, kids2 = t2.childNodes;
+        int n2 = labels2.length;
+        double lambda2 = lambda * lambda;
+
+        double k = 0;
+        for (int i = 1; i <= n; i++) {
+            int c1 = kids1[start1 + i - 1];
+            for (int j = 1; j <= m; j++) {
+                int c2 = kids2[start2 + j - 1];
+                double weight = 0;
+                if (labels1[c1] == labels2[c2])
+                    weight = partialTrees ? deltas[c1 * n2 + c2] : lambda2;
+                weights[i * width + j] = weight;
+                dps[i * width + j] = weight;
+                k += weight;
+            }
+        }
+
+        // dp[i][j] sums the subsequences of length l - 1 ending before i and j
+        int p = Math.min(n, m);
+        for (int l = 1; l < p; l++) {
+            Arrays.fill(dp, (l - 1) * width, l * width, 0);
+            for (int i = 0; i <= n; i++)
+                dp[i * width + l - 1] = 0;
+
+            for (int i = l; i <= n; i++) {
+                for (int j = l; j <= m; j++) {
+                    int ij = i * width + j;
+                    dp[ij] = dps[ij] + lambda * dp[ij - width] + lambda * dp[ij - 1] - lambda2 * dp[ij - width - 1];
+                    if (weights[ij] != 0) {
+                        dps[ij] = weights[ij] * dp[ij - width - 1];
+                        k += dps[ij];
+                    }
+                }
+            }
+        }
+        return k;
+    }
+
+    /**
+     * For each node of the first tree, find the range of its matching nodes
+     * in the sorted nodes of the second tree. Returns false if there are none.
+     */
+    private boolean matchNodes(int[] sorted1, int[] keys1, int[] sorted2, int[] keys2, int n1) {
+        Arrays.fill(matchStarts, 0, n1, 0);
+        Arrays.fill(matchEnds, 0, n1, 0);
+        boolean found = false;
+        int start = 0, end = 0, lastKey = -1;
+        for (int q = 0; q < sorted1.length; q++) {
+            int key = keys1[sorted1[q]];
+            if (key != lastKey) {
+                start = end;
+                while (start < sorted2.length && keys2[sorted2[start]] < key)
+                    start++;
+                end = start;
+                while (end < sorted2.length && keys2[sorted2[end]] == key)
+                    end++;
+                lastKey = key;
+            }
+            matchStarts[sorted1[q]] = start;
+            matchEnds[sorted1[q]] = end;
+            found |= end > start;
+        }
+        return found;
+    }
+
+    private void reserve(int n1, int n2) {
+        if (matchStarts.length < n1) {
+            matchStarts = new int[n1];
+            matchEnds = new int[n1];
+        }
+        if (deltas.length < n1 * n2)
+            deltas = new double[n1 * n2];
+    }
+
+    private int[] matchStarts = new int[0];
+    private int[] matchEnds = new int[0];
+
+    /** deltas[i * n2 + j] is the delta of node i and j, set for the matching pairs */
+    private double[] deltas = new double[0];
+
+    private double[] dps = new double[0];
+    private double[] dp = new double[0];
+    private double[] weights = new double[0];
+}
@@ -0,0 +1,116 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.kernels;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+
+/**
+ * The parameters of the kernel applied to one tree of the instances,
+ * as in the tree_kernels.param file of SVM-light-TK: one line per tree,
+ * <code>kernel type, generality, lambda, mu, weight, normalization :</code>
+ * ended by a line with the kernel type 10000.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class TreeKernelParameters {
+
+    /** Kernel types */
+    public static final int SUBTREE_KERNEL = 0;
+    public static final int SUBSET_TREE_KERNEL = 1;
+    public static final int PARTIAL_TREE_KERNEL = 3;
+    public static final int STRING_KERNEL = 6;
+    public static final int NOKERNEL = -10;
+    public static final int END_OF_TREE_KERNELS = 10000;
+
+    public TreeKernelParameters(int kernelType, int generality, double lambda, double mu,
+            double weight, boolean normalization) {
+        this.kernelType = kernelType;
+        this.generality = generality;
+        this.lambda = lambda;
+        this.mu = mu;
+        this.weight = weight;
+        this.normalization = normalization;
+    }
+
+    /**
+     * Parse the parameters of a line, "1,1,.4,.4,1,1 :".
+     */
+    public static TreeKernelParameters parse(String line) {
+        int end = line.indexOf(':');
+        String[] fields = ((end == -1) ? line : line.substring(0, end)).split(",");
+        if (fields.length < 6)
+            throw new IllegalArgumentException("Wrong tree kernel parameters: " + line);
+        return new TreeKernelParameters(
+                Integer.parseInt(fields[0].trim()), Integer.parseInt(fields[1].trim()),
+                Double.parseDouble(fields[2].trim()), Double.parseDouble(fields[3].trim()),
+                Double.parseDouble(fields[4].trim()), Integer.parseInt(fields[5].trim()) != 0);
+    }
+
+    /**
+     * Read the parameters of all trees from a tree_kernels.param file.
+     */
+    public static TreeKernelParameters[] read(String paramFilename) throws IOException {
+        ArrayList paramList = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(paramFilename)));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.trim().length() == 0)
+                    continue;
+                TreeKernelParameters params = parse(line);
+                if (params.kernelType == END_OF_TREE_KERNELS)
+                    break;
+                paramList.add(params);
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return (TreeKernelParameters[])paramList.toArray(new TreeKernelParameters[paramList.size()]);
+    }
+
+    public String toString() {
+        return kernelType + "," + generality + "," + lambda + "," + mu + "," + weight + "," + (normalization ? 1 : 0);
+    }
+
+    public final int kernelType;
+    
+    /** Only supported equal to the kernel type, see {@link TreeKernelEngine} */
+    public final int generality;
+    
+    /** Decay of the tree fragments, and of the gaps of subsequences */
+    public final double lambda;
+    
+    /** Decay of the height of the partial trees */
+    public final double mu;
+    
+    public final double weight;
+    
+    /** Whether the kernel is divided by the norms of both trees */
+    public final boolean normalization;
+}
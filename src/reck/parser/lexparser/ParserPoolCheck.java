@@ -0,0 +1,168 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.parser.lexparser;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.Tree;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import reck.util.ParserConstants;
+
+/**
+ * Check that the parsers of <code>ParserConstants.parserPool</code>, used
+ * by several threads at the same time, give the same trees as its first
+ * parser used alone.
+ * <p>
+ * java -cp RECK.jar reck.parser.lexparser.ParserPoolCheck sentences [nbthreads]
+ * <p>
+ * The sentences are read one per line, tokenized on white spaces, and
+ * parsed with englishPCFG.ser.gz from the working folder. They are parsed
+ * by the threads first, with new parsers built by the pool while others
+ * are parsing, then one by one, so that the words unknown to the grammar
+ * are first met by several threads. The exit status is 1 if a tree differs.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class ParserPoolCheck {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: ParserPoolCheck sentences [nbthreads]");
+            System.exit(2);
+        }
+        int nbthreads = (args.length > 1) ? Integer.parseInt(args[1]) : 4;
+        ArrayList sentences = readSentences(args[0]);
+
+        long time = System.currentTimeMillis();
+        String[] parallelTrees = parseInParallel(ParserConstants.parserPool, sentences, nbthreads);
+        long parallelTime = System.currentTimeMillis() - time;
+
+        time = System.currentTimeMillis();
+        String[] trees = new String[sentences.size()];
+        for (int i = 0; i < sentences.size(); i++)
+            trees[i] = parse(ParserConstants.lp, (List)sentences.get(i));
+        long sequentialTime = System.currentTimeMillis() - time;
+
+        int nbr_differences = 0;
+        for (int i = 0; i < trees.length; i++) {
+            if (!trees[i].equals(parallelTrees[i])) {
+                if (nbr_differences == 0)
+                    System.out.println("Sentence " + i + ":\n  " + trees[i] + "\n  " + parallelTrees[i]);
+                nbr_differences++;
+            }
+        }
+
+        System.out.println(trees.length + " sentences, " + ParserConstants.parserPool.size() + " parsers, "
+                + nbthreads + " threads " + parallelTime + " ms, one parser " + sequentialTime + " ms, "
+                + nbr_differences + " different trees");
+        if (nbr_differences > 0)
+            System.exit(1);
+    }
+
+    /**
+     * Parse the sentences with parsers taken from a pool by several threads.
+     */
+    private static String[] parseInParallel(final RECKParserPool pool, ArrayList sentences, int nbthreads) {
+        ExecutorService executor = Executors.newFixedThreadPool(nbthreads);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            for (int i = 0; i < sentences.size(); i++) {
+                final List sentence = (List)sentences.get(i);
+                results.add(executor.submit(new Callable<String>() {
+                    public String call() {
+                        RECKLexicalizedParser parser = pool.acquire();
+                        try {
+                            return parse(parser, sentence);
+                        }
+                        finally {
+                            pool.release(parser);
+                        }
+                    }
+                }));
+            }
+
+            String[] trees = new String[sentences.size()];
+            for (int i = 0; i < trees.length; i++)
+                trees[i] = results.get(i).get();
+            return trees;
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing sentences", intEx);
+        }
+        catch (ExecutionException exeEx) {
+            throw new RuntimeException("Failed to parse sentences", exeEx.getCause());
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Parse a sentence, the tree is printed on one line.
+     */
+    private static String parse(RECKLexicalizedParser parser, List sentence) {
+        try {
+            if (!parser.parse(sentence))
+                return "(unparsable)";
+        }
+        catch (UnsupportedOperationException uEx) {
+            return "(skipped)";
+        }
+        Tree tree = parser.getBestParse();
+        return (tree == null) ? "(no parse)" : tree.toString();
+    }
+
+    private static ArrayList readSentences(String filename) throws IOException {
+        ArrayList sentences = new ArrayList();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(filename), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                ArrayList<HasWord> sentence = new ArrayList<HasWord>();
+                for (StringTokenizer st = new StringTokenizer(line); st.hasMoreTokens(); )
+                    sentence.add(new Word(st.nextToken()));
+                if (!sentence.isEmpty())
+                    sentences.add(sentence);
+            }
+        }
+        finally {
+            reader.close();
+        }
+        return sentences;
+    }
+}
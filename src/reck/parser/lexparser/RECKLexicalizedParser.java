@@ -33,6 +33,7 @@ import edu.stanford.nlp.parser.lexparser.AbstractEval;
 import edu.stanford.nlp.parser.lexparser.LexicalizedParser;
 import edu.stanford.nlp.parser.lexparser.Lexicon;
 import edu.stanford.nlp.parser.lexparser.Options;
+import edu.stanford.nlp.parser.lexparser.ParserData;
 import edu.stanford.nlp.parser.lexparser.Test;
 import edu.stanford.nlp.parser.lexparser.TreebankLangParserParams;
 import edu.stanford.nlp.process.DocumentPreprocessor;
@@ -49,6 +50,10 @@ import java.util.List;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -72,7 +77,7 @@ public class RECKLexicalizedParser extends LexicalizedParser {
     
     Options op = super.getOp();
     
-    private static boolean parseSucceeded = false;
+    private boolean parseSucceeded = false;
     
     private int maxDistanceBetweenLeaves = 9;
 
@@ -153,6 +158,17 @@ public class RECKLexicalizedParser extends LexicalizedParser {
         super(parserFileOrUrl);
     }
 
+    /**
+     * Construct a new LexicalizedParser on a grammar already loaded.
+     * The grammar is shared with the other parsers built on it,
+     * only the parse state belongs to this parser.
+     *
+     * @param pd The grammar and options of a loaded parser
+     */
+    public RECKLexicalizedParser(ParserData pd) {
+        super(pd);
+    }
+
     /**
      * Construct a new LexicalizedParser.  This loads a grammar that
      * was previously assembled and stored.
@@ -275,41 +291,66 @@ public class RECKLexicalizedParser extends LexicalizedParser {
     if (length > Test.maxLength) {
       throw new UnsupportedOperationException("Sentence too long: length " + length);
     }
-    TreePrint treePrint = getTreePrint();
-    PrintWriter pwOut = op.tlpParams.pw();
-    parseSucceeded = false;
-    sentenceB.add(new Word(Lexicon.BOUNDARY));
-    if (op.doPCFG) {
-      if (!pparser.parse(sentenceB)) {
-        return parseSucceeded;
-      }
-      if (Test.verbose) {
-        System.out.println("PParser output");
-        // pwOut.println(debinarizer.transformTree(pparser.getBestParse())); // with scores on nodes
-        treePrint.printTree(debinarizer.transformTree(pparser.getBestParse()), pwOut);
-      }
-    }
-    if (op.doDep && ! Test.useFastFactored) {
-      if ( ! dparser.parse(sentenceB)) {
-        return parseSucceeded;
+    // the words are numbered in the numberers shared by all the parsers
+    synchronized (RECKParserPool.NUMBERER_LOCK) {
+      TreePrint treePrint = getTreePrint();
+      PrintWriter pwOut = op.tlpParams.pw();
+      parseSucceeded = false;
+      sentenceB.add(new Word(Lexicon.BOUNDARY));
+      if (op.doPCFG) {
+        if (!pparser.parse(sentenceB)) {
+          return parseSucceeded;
+        }
+        if (Test.verbose) {
+          System.out.println("PParser output");
+          // pwOut.println(debinarizer.transformTree(pparser.getBestParse())); // with scores on nodes
+          treePrint.printTree(debinarizer.transformTree(pparser.getBestParse()), pwOut);
+        }
       }
-      // cdm nov 2006: should move these printing bits to the main printing section,
-      // so don't calculate the best parse twice!
-      if (Test.verbose) {
-        System.out.println("DParser output");
-        treePrint.printTree(dparser.getBestParse(), pwOut);
+      if (op.doDep && ! Test.useFastFactored) {
+        if ( ! dparser.parse(sentenceB)) {
+          return parseSucceeded;
+        }
+        // cdm nov 2006: should move these printing bits to the main printing section,
+        // so don't calculate the best parse twice!
+        if (Test.verbose) {
+          System.out.println("DParser output");
+          treePrint.printTree(dparser.getBestParse(), pwOut);
+        }
       }
-    }
-    if (op.doPCFG && op.doDep) {
-      if ( ! bparser.parse(sentenceB)) {
-        return parseSucceeded;
-      } else {
-        parseSucceeded = true;
+      if (op.doPCFG && op.doDep) {
+        if ( ! bparser.parse(sentenceB)) {
+          return parseSucceeded;
+        } else {
+          parseSucceeded = true;
+        }
       }
     }
     return true;
   }
 
+  /**
+   * Return the best parse of the last sentence, read under the lock of the
+   * numberers of its states.
+   */
+  @Override
+  public Tree getBestParse() {
+    synchronized (RECKParserPool.NUMBERER_LOCK) {
+      return super.getBestParse();
+    }
+  }
+
+  /**
+   * Return the best PCFG parse of the last sentence, read under the lock
+   * of the numberers of its states.
+   */
+  @Override
+  public Tree getBestPCFGParse() {
+    synchronized (RECKParserPool.NUMBERER_LOCK) {
+      return super.getBestPCFGParse();
+    }
+  }
+
     /** Parse the files with names given in the String array args elements from
      *  index argIndex on.
      */
@@ -370,138 +411,39 @@ public class RECKLexicalizedParser extends LexicalizedParser {
         PrintWriter pwo = pwOut;
 
         int num = 0, docIndex = startSentence;
-        for (List sentence : document) {
-            // System.out.println(sentence.toString());
-            num++;
-            numSents++;
-            int len = sentence.size();
-            numWords += len;
-
-            Tree ansTree = null;
-            try {
-                if ( ! parse(sentence)) {
-                    pwErr.print("Sentence couldn't be parsed by grammar.");
-                    if (pparser != null && pparser.hasParse() && fallbackToPCFG) {
-                        pwErr.println("... falling back to PCFG parse.");
-                        ansTree = getBestPCFGParse();
-                        numFallback++;
-                    } 
-                    else {
-                        pwErr.println();
-                        numUnparsable++;
-                    }
-                } 
-                else {
-                    // System.out.println("Score: " + lp.pparser.bestScore);
-                    ansTree = getBestParse();
-                }
-                if (pcfgLL != null && pparser != null) {
-                    pcfgLL.recordScore(pparser, pwErr);
-                }
-                if (depLL != null && dparser != null) {
-                    depLL.recordScore(dparser, pwErr);
-                }
-                if (factLL != null && bparser != null) {
-                    factLL.recordScore(bparser, pwErr);
-                }
-            } 
-            catch (OutOfMemoryError e) {
-                if (Test.maxLength != -0xDEADBEEF) {
-                    // this means they explicitly asked for a length they cannot handle. Throw exception.
-                    pwErr.println("NOT ENOUGH MEMORY TO PARSE SENTENCES OF LENGTH " + Test.maxLength);
-                    pwo.println("NOT ENOUGH MEMORY TO PARSE SENTENCES OF LENGTH " + Test.maxLength);
-                    throw e;
-                } 
-                else {
-                    if ( ! saidMemMessage) {
-                        printOutOfMemory(pwErr);
-                        saidMemMessage = true;
-                    }
-                    if (pparser.hasParse() && fallbackToPCFG) {
-                        try {
-                            String what = "dependency";
-                            if (dparser.hasParse()) {
-                                what = "factored";
-                            }
-                            pwErr.println("Sentence too long for " + what + " parser.  Falling back to PCFG parse...");
-                            ansTree = getBestPCFGParse();
-                            numFallback++;
-                        } 
-                        catch (OutOfMemoryError oome) {
-                            oome.printStackTrace();
-                            numNoMemory++;
-                            pwErr.println("No memory to gather PCFG parse. Skipping...");
-                            pwo.println("Sentence skipped:  no PCFG fallback.");
-                            pparser.nudgeDownArraySize();
-                        }
-                    } 
-                    else {
-                        pwErr.println("Sentence has no parse using PCFG grammar (or no PCFG fallback).  Skipping...");
-                        pwo.println("Sentence skipped: no PCFG fallback.");
-                        numSkipped++;
-                    }
-                }
-            } 
-            catch (UnsupportedOperationException uEx) {
-                pwErr.println("Sentence too long (or zero words).");
-                pwo.println("Sentence skipped: too long (or zero words).");
-                numWords -= len;
-                numSkipped++;
-            }
+        int[] counts = new int[NBR_COUNTS];
+        if (nbthreads > 1 && document.size() > 1) {
+            num = numSents = document.size();
+            for (List sentence : document)
+                numWords += sentence.size();
+            treeList = parseSentencesInParallel(content, startSentence, document, 
+                    pwErr, pwo, pcfgLL, depLL, factLL, counts);
+        }
+        else {
+            for (List sentence : document) {
+                // System.out.println(sentence.toString());
+                num++;
+                numSents++;
+                int len = sentence.size();
+                numWords += len;
 
-            if (ansTree != null) {
-                computePosition(docIndex, (Sentence)sentence, content);
-                TDs = treePrint.getDependencies(ansTree, reckTreeList, sentencePosition);
-                if (TDs.size() > 0)
-                    TDs = treePrint.orderDependencies(TDs, ansTree.getLeaves().size());
-                RECKDPTreeNodeImpl DPTree = treePrint.convertToDependencyTree(ansTree, reckTreeList, sentencePosition);
-                DPTree = this.splitHyphen_Dependency(DPTree);
-                DPTree = this.splitPoint_Dependency(DPTree);
-                RECKCTTreeNodeImpl CTTree = convertToRECKTree(ansTree, docIndex, content);
-                CTTree = this.splitHyphen_Constituent(CTTree);
-                CTTree = this.splitPoint_Constituent(CTTree);
-                RECKParseTreeImpl rpTree = new RECKParseTreeImpl(sentence, TDs, sentencePosition, DPTree, CTTree);
-                treeList.add(rpTree);
-            }
-            // crude addition of k-best tree printing
-            if (Test.printPCFGkBest > 0 && pparser.hasParse()) {
-                if (ansTree != null) {
-                    computePosition(docIndex, (Sentence)sentence, content);
-                    TDs = treePrint.getDependencies(ansTree, reckTreeList, sentencePosition);
-                    if (TDs.size() > 0)
-                        TDs = treePrint.orderDependencies(TDs, ansTree.getLeaves().size());
-                    RECKDPTreeNodeImpl DPTree = treePrint.convertToDependencyTree(ansTree, reckTreeList, sentencePosition);
-                    DPTree = this.splitHyphen_Dependency(DPTree);
-                    DPTree = this.splitPoint_Dependency(DPTree);
-                    RECKCTTreeNodeImpl CTTree = convertToRECKTree(ansTree, docIndex, content);
-                    CTTree = this.splitHyphen_Constituent(CTTree);
-                    CTTree = this.splitPoint_Constituent(CTTree);
-                    RECKParseTreeImpl rpTree = new RECKParseTreeImpl(sentence, TDs, sentencePosition, DPTree, CTTree);
-                    treeList.add(rpTree);
-                }
+                ParsedSentence parsed = getParse(sentence, pwErr, pwo, pcfgLL, depLL, factLL, counts);
 
-            } 
-            else if (Test.printFactoredKGood > 0 && bparser.hasParse()) {
-                // DZ: debug n best trees
-                if (ansTree != null) {
-                    computePosition(docIndex, (Sentence)sentence, content);
-                    TDs = treePrint.getDependencies(ansTree, reckTreeList, sentencePosition);
-                    if (TDs.size() > 0)
-                        TDs = treePrint.orderDependencies(TDs, ansTree.getLeaves().size());
-                    RECKDPTreeNodeImpl DPTree = treePrint.convertToDependencyTree(ansTree, reckTreeList, sentencePosition);
-                    DPTree = this.splitHyphen_Dependency(DPTree);
-                    DPTree = this.splitPoint_Dependency(DPTree);
-                    RECKCTTreeNodeImpl CTTree = convertToRECKTree(ansTree, docIndex, content);
-                    CTTree = this.splitHyphen_Constituent(CTTree);
-                    CTTree = this.splitPoint_Constituent(CTTree);
-                    RECKParseTreeImpl rpTree = new RECKParseTreeImpl(sentence, TDs, sentencePosition, DPTree, CTTree);
-                    treeList.add(rpTree);
-                }
-            }
+                // crude addition of k-best tree printing
+                for (int k = 0; k < parsed.nbr_copies; k++)
+                    treeList.add(buildParseTree(parsed, sentence, docIndex, content, treePrint));
+                cacheParse(sentence, parsed);
 
-            docIndex = sentencePosition.getEnd().intValue();
+                docIndex = sentencePosition.getEnd().intValue();
 
-        } // for sentence : document
+            } // for sentence : document
+        }
+        numUnparsable = counts[UNPARSABLE];
+        numNoMemory = counts[NO_MEMORY];
+        numFallback = counts[FALLBACK];
+        numSkipped = counts[SKIPPED];
+        numWords -= counts[SKIPPED_WORDS];
+        saidMemMessage = counts[MEM_MESSAGE] > 0;
 
         if (Test.writeOutputFiles) {
             pwo.close();
@@ -548,6 +490,344 @@ public class RECKLexicalizedParser extends LexicalizedParser {
         return treeList;
     } // end parseFile
     
+    /**
+     * Parse a sentence, falling back to the PCFG parse when possible.
+     * @param counts the counters of sentences unparsable, without memory,
+     *               parsed by fallback and skipped, and of the words of
+     *               the skipped sentences, are updated here
+     * @return the best parse or <code>null</code> if the sentence is skipped
+     */
+    private Tree parseSentence(List sentence, PrintWriter pwErr, PrintWriter pwo,
+            AbstractEval.ScoreEval pcfgLL, AbstractEval.ScoreEval depLL, 
+            AbstractEval.ScoreEval factLL, int[] counts) {
+        Tree ansTree = null;
+        try {
+            if ( ! parse(sentence)) {
+                pwErr.print("Sentence couldn't be parsed by grammar.");
+                if (pparser != null && pparser.hasParse() && fallbackToPCFG) {
+                    pwErr.println("... falling back to PCFG parse.");
+                    ansTree = getBestPCFGParse();
+                    counts[FALLBACK]++;
+                } 
+                else {
+                    pwErr.println();
+                    counts[UNPARSABLE]++;
+                }
+            } 
+            else {
+                // System.out.println("Score: " + lp.pparser.bestScore);
+                ansTree = getBestParse();
+            }
+            if (pcfgLL != null && pparser != null) {
+                synchronized (pcfgLL) {
+                    pcfgLL.recordScore(pparser, pwErr);
+                }
+            }
+            if (depLL != null && dparser != null) {
+                synchronized (depLL) {
+                    depLL.recordScore(dparser, pwErr);
+                }
+            }
+            if (factLL != null && bparser != null) {
+                synchronized (factLL) {
+                    factLL.recordScore(bparser, pwErr);
+                }
+            }
+        } 
+        catch (OutOfMemoryError e) {
+            if (Test.maxLength != -0xDEADBEEF) {
+                // this means they explicitly asked for a length they cannot handle. Throw exception.
+                pwErr.println("NOT ENOUGH MEMORY TO PARSE SENTENCES OF LENGTH " + Test.maxLength);
+                pwo.println("NOT ENOUGH MEMORY TO PARSE SENTENCES OF LENGTH " + Test.maxLength);
+                throw e;
+            } 
+            else {
+                if (counts[MEM_MESSAGE] == 0) {
+                    printOutOfMemory(pwErr);
+                    counts[MEM_MESSAGE]++;
+                }
+                if (pparser.hasParse() && fallbackToPCFG) {
+                    try {
+                        String what = "dependency";
+                        if (dparser.hasParse()) {
+                            what = "factored";
+                        }
+                        pwErr.println("Sentence too long for " + what + " parser.  Falling back to PCFG parse...");
+                        ansTree = getBestPCFGParse();
+                        counts[FALLBACK]++;
+                    } 
+                    catch (OutOfMemoryError oome) {
+                        oome.printStackTrace();
+                        counts[NO_MEMORY]++;
+                        pwErr.println("No memory to gather PCFG parse. Skipping...");
+                        pwo.println("Sentence skipped:  no PCFG fallback.");
+                        pparser.nudgeDownArraySize();
+                    }
+                } 
+                else {
+                    pwErr.println("Sentence has no parse using PCFG grammar (or no PCFG fallback).  Skipping...");
+                    pwo.println("Sentence skipped: no PCFG fallback.");
+                    counts[SKIPPED]++;
+                }
+            }
+        } 
+        catch (UnsupportedOperationException uEx) {
+            pwErr.println("Sentence too long (or zero words).");
+            pwo.println("Sentence skipped: too long (or zero words).");
+            counts[SKIPPED]++;
+            counts[SKIPPED_WORDS] += sentence.size();
+        }
+        
+        return ansTree;
+    }
+    
+    /**
+     * Get the parse of a sentence from the parse cache, 
+     * or parse the sentence if it is not found there.
+     */
+    private ParsedSentence getParse(List sentence, PrintWriter pwErr, PrintWriter pwo,
+            AbstractEval.ScoreEval pcfgLL, AbstractEval.ScoreEval depLL, 
+            AbstractEval.ScoreEval factLL, int[] counts) {
+        ParsedSentence parsed = new ParsedSentence();
+        RECKParseCache.Entry entry = usesParseCache() ? parseCache.get(sentence, getParseOptions()) : null;
+        
+        if (entry != null) {
+            parsed.ansTree = entry.tree;
+            parsed.dependencies = entry.dependencies;
+            parsed.nbr_copies = 1;
+            parsed.cached = true;
+        }
+        else {
+            parsed.ansTree = parseSentence(sentence, pwErr, pwo, pcfgLL, depLL, factLL, counts);
+            if (parsed.ansTree != null)
+                parsed.nbr_copies = getNbrOfTrees();
+        }
+        
+        return parsed;
+    }
+    
+    /**
+     * Put a new parse into the parse cache, 
+     * once its dependencies are computed by <code>buildParseTree</code>.
+     */
+    private void cacheParse(List sentence, ParsedSentence parsed) {
+        if (usesParseCache() && !parsed.cached && parsed.dependencies != null)
+            parseCache.put(sentence, getParseOptions(), parsed.ansTree, parsed.dependencies);
+    }
+    
+    /**
+     * The parse cache is not used when k-best trees are printed, since the
+     * number of trees built depends on the state of the parsers after a parse.
+     */
+    private boolean usesParseCache() {
+        return parseCache != null && Test.printPCFGkBest <= 0 && Test.printFactoredKGood <= 0;
+    }
+    
+    /**
+     * Get the options changing the parse of a sentence, 
+     * the parses of the cache are found by them and by the grammar.
+     */
+    String getParseOptions() {
+        return "doPCFG=" + op.doPCFG + " doDep=" + op.doDep 
+                + " useFastFactored=" + Test.useFastFactored 
+                + " maxLength=" + Test.maxLength 
+                + " addMissingFinalPunctuation=" + Test.addMissingFinalPunctuation 
+                + " fallbackToPCFG=" + fallbackToPCFG;
+    }
+    
+    /**
+     * Get the number of RECK trees to build from the last parse,
+     * one more when k-best trees are printed.
+     */
+    private int getNbrOfTrees() {
+        if (Test.printPCFGkBest > 0 && pparser.hasParse())
+            return 2;
+        else if (Test.printFactoredKGood > 0 && bparser.hasParse())
+            return 2;
+        return 1;
+    }
+    
+    /**
+     * Convert a parse to the constituent and dependency RECK trees 
+     * of a sentence starting from a given offset in the content.
+     */
+    private RECKParseTreeImpl buildParseTree(ParsedSentence parsed, List sentence, int docIndex, 
+            String content, RECKTreePrint treePrint) {
+        Tree ansTree = parsed.ansTree;
+        RECKTreePrint.DependencyParse dependencyParse = null;
+        computePosition(docIndex, (Sentence)sentence, content);
+        if (parsed.dependencies != null)
+            dependencyParse = treePrint.convertToDependencies(ansTree, parsed.dependencies, reckTreeList, sentencePosition);
+        else {
+            dependencyParse = treePrint.convertToDependencies(ansTree, reckTreeList, sentencePosition);
+            parsed.dependencies = dependencyParse.getDependencies();
+        }
+        TDs = dependencyParse.getOrderedDependencies();
+        RECKDPTreeNodeImpl DPTree = dependencyParse.getDPTree();
+        DPTree = this.splitHyphen_Dependency(DPTree);
+        DPTree = this.splitPoint_Dependency(DPTree);
+        RECKCTTreeNodeImpl CTTree = convertToRECKTree(ansTree, docIndex, content);
+        CTTree = this.splitHyphen_Constituent(CTTree);
+        CTTree = this.splitPoint_Constituent(CTTree);
+        return new RECKParseTreeImpl(sentence, TDs, sentencePosition, DPTree, CTTree);
+    }
+    
+    /**
+     * Parse the sentences of a file on a fork-join pool. The offsets of all
+     * the sentences are found first, then each sentence is parsed and 
+     * converted by a parser of the pool.
+     * @return the RECK trees, in the order of the sentences
+     */
+    private ArrayList parseSentencesInParallel(final String content, int startSentence,
+            List<List<? extends HasWord>> document, final PrintWriter pwErr, final PrintWriter pwo,
+            final AbstractEval.ScoreEval pcfgLL, final AbstractEval.ScoreEval depLL, 
+            final AbstractEval.ScoreEval factLL, int[] counts) {
+        int n = document.size();
+        int[] starts = new int[n];
+        int docIndex = startSentence;
+        for (int i = 0; i < n; i++) {
+            starts[i] = docIndex;
+            computePosition(docIndex, (Sentence)document.get(i), content);
+            docIndex = sentencePosition.getEnd().intValue();
+        }
+        
+        // this parser is busy with the file, a parser outside of any pool 
+        // takes the parsers of the sentences from a pool of its own
+        if (pool == null && sentenceParsers == null)
+            sentenceParsers = new RECKParserPool(parserData());
+        final RECKParserPool parsers = (pool != null) ? pool : sentenceParsers;
+        final RECKParseCache cache = parseCache;
+        
+        List<Callable<ParsedSentence>> tasks = new ArrayList<Callable<ParsedSentence>>();
+        for (int i = 0; i < n; i++) {
+            final List sentence = document.get(i);
+            final int start = starts[i];
+            tasks.add(new Callable<ParsedSentence>() {
+                public ParsedSentence call() {
+                    RECKLexicalizedParser parser = parsers.acquire();
+                    parser.setParseCache(cache);
+                    try {
+                        return parser.parseAndConvert(sentence, start, content, 
+                                pwErr, pwo, pcfgLL, depLL, factLL);
+                    }
+                    finally {
+                        parsers.release(parser);
+                    }
+                }
+            });
+        }
+        
+        List<Future<ParsedSentence>> results = getSentencePool(nbthreads).invokeAll(tasks);
+        
+        ArrayList treeList = new ArrayList();
+        RECKTreePrint treePrint = getRECKTreePrint(op);
+        docIndex = startSentence;
+        try {
+            for (int i = 0; i < n; i++) {
+                ParsedSentence parsed = results.get(i).get();
+                for (int k = 0; k < NBR_COUNTS; k++)
+                    counts[k] += parsed.counts[k];
+                if (parsed.ansTree == null)
+                    continue;
+                cacheParse(document.get(i), parsed);
+                
+                // a sentence before could not be parsed, the offsets
+                // are searched from the end of the last parsed sentence
+                if (starts[i] != docIndex) {
+                    parsed.trees.clear();
+                    for (int k = 0; k < parsed.nbr_copies; k++)
+                        parsed.trees.add(buildParseTree(parsed, document.get(i), 
+                                docIndex, content, treePrint));
+                }
+                
+                treeList.addAll(parsed.trees);
+                docIndex = ((RECKParseTreeImpl)parsed.trees.get(0)).getPosition().getEnd().intValue();
+            }
+        }
+        catch (InterruptedException intEx) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing sentences", intEx);
+        }
+        catch (ExecutionException exeEx) {
+            if (exeEx.getCause() instanceof Error)
+                throw (Error)exeEx.getCause();
+            throw new RuntimeException("Failed to parse sentences", exeEx.getCause());
+        }
+        
+        return treeList;
+    }
+    
+    /**
+     * Parse a sentence and convert it, used by the tasks of the fork-join pool.
+     */
+    ParsedSentence parseAndConvert(List sentence, int start, String content, 
+            PrintWriter pwErr, PrintWriter pwo, AbstractEval.ScoreEval pcfgLL, 
+            AbstractEval.ScoreEval depLL, AbstractEval.ScoreEval factLL) {
+        int[] counts = new int[NBR_COUNTS];
+        ParsedSentence parsed = getParse(sentence, pwErr, pwo, pcfgLL, depLL, factLL, counts);
+        parsed.counts = counts;
+        RECKTreePrint treePrint = getRECKTreePrint(op);
+        for (int k = 0; k < parsed.nbr_copies; k++)
+            parsed.trees.add(buildParseTree(parsed, sentence, start, content, treePrint));
+        return parsed;
+    }
+    
+    private static synchronized ForkJoinPool getSentencePool(int parallelism) {
+        if (sentencePool == null || sentencePool.getParallelism() != parallelism) {
+            if (sentencePool != null)
+                sentencePool.shutdown();
+            sentencePool = new ForkJoinPool(parallelism);
+        }
+        return sentencePool;
+    }
+    
+    /**
+     * Set the number of threads used to parse the sentences of a file,
+     * sentences are parsed one by one if it is 1.
+     */
+    public void setNbThreads(int nbthreads) {
+        this.nbthreads = nbthreads;
+    }
+    
+    /**
+     * Set the cache where parses are searched before parsing,
+     * no cache is used if it is <code>null</code>.
+     */
+    public void setParseCache(RECKParseCache parseCache) {
+        this.parseCache = parseCache;
+    }
+    
+    /**
+     * The result of parsing one sentence in parallel.
+     */
+    static final class ParsedSentence {
+        Tree ansTree = null;
+        ArrayList dependencies = null;
+        boolean cached = false;
+        int nbr_copies = 0;
+        ArrayList trees = new ArrayList();
+        int[] counts = null;
+    }
+    
+    private static final int UNPARSABLE = 0, NO_MEMORY = 1, FALLBACK = 2, SKIPPED = 3, 
+            MEM_MESSAGE = 4, SKIPPED_WORDS = 5, NBR_COUNTS = 6;
+    
+    private static ForkJoinPool sentencePool = null;
+    
+    private int nbthreads = 1;
+    
+    private RECKParseCache parseCache = null;
+    
+    /**
+     * The pool this parser belongs to
+     */
+    RECKParserPool pool = null;
+    
+    /**
+     * The parsers of the sentences of a parser outside of any pool
+     */
+    private RECKParserPool sentenceParsers = null;
+    
     public void computePosition(int start, Sentence sentence, String content) {
         
         int docIndex = start;
@@ -0,0 +1,279 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.parser.lexparser;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.trees.Tree;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import reck.util.RECKConstants;
+
+/**
+ * An on-disk cache of the parses of the sentences. 
+ * A parse is found by a hash of the tokens of the sentence, of the 
+ * grammar and of the parser options changing the parse, and contains 
+ * the parse tree and the typed dependencies, everything needed to 
+ * rebuild a <code>RECKParseTreeImpl</code>.
+ * The least recently used parses are removed when the cache is full.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class RECKParseCache {
+    
+    /**
+     * Open a cache in a folder.
+     * @param folder         the folder containing the parses
+     * @param maxSize        the maximum size of the cache, in bytes
+     * @param grammarFilename the grammar the parses are made with
+     */
+    public RECKParseCache(File folder, long maxSize, String grammarFilename) {
+        this.folder = folder;
+        this.maxSize = maxSize;
+        this.grammarId = grammarIdentity(grammarFilename);
+        
+        if (!folder.exists())
+            folder.mkdirs();
+        File[] fs = listEntries();
+        for (int i = 0; i < fs.length; i++)
+            currentSize += fs[i].length();
+    }
+    
+    /**
+     * Get the parse of a sentence.
+     * @param sentence     the tokens of the sentence
+     * @param options      the parser options the parse is made with
+     * @return the parse or <code>null</code> if it is not in the cache
+     */
+    public Entry get(List sentence, String options) {
+        String text = entryText(sentence, options);
+        File f = entryFile(text);
+        if (!f.exists())
+            return null;
+        
+        try {
+            ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(
+                    new FileInputStream(f), RECKConstants.INTERNAL_BUFFER_SIZE));
+            Entry entry = null;
+            try {
+                entry = (Entry)in.readObject();
+            }
+            finally {
+                in.close();
+            }
+            if (!text.equals(entry.text))
+                return null;
+            f.setLastModified(System.currentTimeMillis());
+            return entry;
+        }
+        catch (IOException ioEx) {
+            // a parse being removed or not completely written is a miss
+            return null;
+        }
+        catch (ClassNotFoundException cnfEx) {
+            cnfEx.printStackTrace();
+            return null;
+        }
+    }
+    
+    /**
+     * Put the parse of a sentence into the cache.
+     * @param sentence     the tokens of the sentence
+     * @param options      the parser options the parse is made with
+     * @param tree         the parse tree given by the parser
+     * @param dependencies the typed dependencies of the parse, not ordered
+     */
+    public void put(List sentence, String options, Tree tree, ArrayList dependencies) {
+        String text = entryText(sentence, options);
+        File f = entryFile(text);
+        File tmp = new File(f.getPath() + "." + Thread.currentThread().getId() + ".tmp");
+        
+        try {
+            f.getParentFile().mkdirs();
+            ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp), RECKConstants.INTERNAL_BUFFER_SIZE));
+            try {
+                out.writeObject(new Entry(text, tree, dependencies));
+            }
+            finally {
+                out.close();
+            }
+            
+            synchronized (this) {
+                long oldSize = f.exists() ? f.length() : 0;
+                if (f.exists())
+                    f.delete();
+                if (!tmp.renameTo(f)) {
+                    tmp.delete();
+                    return;
+                }
+                currentSize += f.length() - oldSize;
+                if (currentSize > maxSize)
+                    evict();
+            }
+        }
+        catch (IOException ioEx) {
+            ioEx.printStackTrace();
+            tmp.delete();
+        }
+    }
+    
+    /** Get the size of the cache, in bytes. */
+    public synchronized long size() {
+        return currentSize;
+    }
+    
+    /**
+     * Remove the least recently used parses, 
+     * until the cache is filled at 90% of its maximum size.
+     */
+    private void evict() {
+        File[] fs = listEntries();
+        Arrays.sort(fs, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                long t1 = ((File)o1).lastModified(), t2 = ((File)o2).lastModified();
+                return (t1 < t2) ? -1 : ((t1 == t2) ? 0 : 1);
+            }
+        });
+        
+        long limit = maxSize / 10 * 9;
+        for (int i = 0; i < fs.length && currentSize > limit; i++) {
+            long length = fs[i].length();
+            if (fs[i].delete())
+                currentSize -= length;
+        }
+    }
+    
+    private File[] listEntries() {
+        ArrayList entries = new ArrayList();
+        File[] dirs = folder.listFiles();
+        for (int i = 0; dirs != null && i < dirs.length; i++) {
+            if (!dirs[i].isDirectory())
+                continue;
+            File[] fs = dirs[i].listFiles(new RECKConstants.ReckFilenameFilter(".parse"));
+            for (int j = 0; fs != null && j < fs.length; j++)
+                entries.add(fs[j]);
+        }
+        return (File[])entries.toArray(new File[entries.size()]);
+    }
+    
+    private File entryFile(String text) {
+        String key = hash(grammarId + "\n" + text);
+        return new File(new File(folder, key.substring(0, 2)), key + ".parse");
+    }
+    
+    /**
+     * The options, then the tokens of the sentence separated by spaces.
+     */
+    private static String entryText(List sentence, String options) {
+        StringBuffer sb = new StringBuffer(options).append('\n');
+        for (int i = 0; i < sentence.size(); i++) {
+            Object o = sentence.get(i);
+            if (i > 0)
+                sb.append(' ');
+            sb.append( (o instanceof HasWord) ? ((HasWord)o).word() : o.toString() );
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * The grammar is identified by its file, its size and its date,
+     * so that a new grammar does not use the parses of the old one.
+     */
+    private static String grammarIdentity(String grammarFilename) {
+        File f = new File(grammarFilename);
+        try {
+            if (f.exists())
+                return f.getCanonicalPath() + ":" + f.length() + ":" + f.lastModified();
+        }
+        catch (IOException ioEx) {
+            ioEx.printStackTrace();
+        }
+        return grammarFilename;
+    }
+    
+    private static String hash(String st) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            byte[] digest = md.digest(st.getBytes("UTF-8"));
+            StringBuffer sb = new StringBuffer();
+            for (int i = 0; i < digest.length; i++) {
+                sb.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                sb.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return sb.toString();
+        }
+        catch (NoSuchAlgorithmException nsaEx) {
+            throw new RuntimeException(nsaEx);
+        }
+        catch (java.io.UnsupportedEncodingException ueEx) {
+            throw new RuntimeException(ueEx);
+        }
+    }
+    
+    /**
+     * The parse of a sentence kept in the cache.
+     */
+    public static class Entry implements Serializable {
+
+        private static final long serialVersionUID = 3165640436815529402L;
+        
+        Entry(String text, Tree tree, ArrayList dependencies) {
+            this.text = text;
+            this.tree = tree;
+            this.dependencies = dependencies;
+        }
+        
+        /** the parser options and the tokens of the sentence */
+        final String text;
+        
+        /** the parse tree given by the parser */
+        final Tree tree;
+        
+        /** the typed dependencies of the parse, not ordered */
+        final ArrayList dependencies;
+    }
+    
+    private final File folder;
+    
+    private final long maxSize;
+    
+    private final String grammarId;
+    
+    private long currentSize = 0;
+}
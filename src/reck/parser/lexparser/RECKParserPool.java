@@ -0,0 +1,127 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.parser.lexparser;
+
+import edu.stanford.nlp.parser.lexparser.ParserData;
+
+import java.util.LinkedList;
+
+/**
+ * A pool of <code>RECKLexicalizedParser</code> sharing the same grammar.
+ * The grammar is loaded once, each parser of the pool only owns
+ * its parse state (charts, last parsed sentence, dependencies),
+ * so that one parser must be used by one thread at a time.
+ * <p>
+ * The Stanford parser also keeps global state in static fields:
+ * <ul>
+ * <li>the <code>Numberer</code>s of words, tags and states, which each
+ * parser constructor installs again from the <code>ParserData</code>,
+ * and which are plain hash maps shared by all the parsers of a pool:
+ * parsing a sentence numbers its words, and the signatures of its unknown
+ * words, adding those never seen before, and reading the best parse reads
+ * the numbers of its states;</li>
+ * <li>the <code>Test</code> and <code>Train</code> flags, set when the
+ * options of the first parser are read and only read when parsing,
+ * since nothing in RECK sets them afterwards.</li>
+ * </ul>
+ * The parsers are therefore built, parse and give their best parse under
+ * {@link #NUMBERER_LOCK}, so that no two threads use the numberers
+ * together. Only the Stanford parsing itself is serialized: threads
+ * sharing a pool still find parses in the parse cache, convert the trees
+ * to RECK trees and process their documents at the same time.
+ * <code>ParserPoolCheck</code> compares the trees of parsers of a pool,
+ * used by several threads, with those of a single parser.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class RECKParserPool {
+    
+    /**
+     * Construct a pool from a parser already loaded, 
+     * the grammar of which is shared by all the parsers of the pool.
+     */
+    public RECKParserPool(RECKLexicalizedParser lp) {
+        this.pd = lp.parserData();
+        this.idleParsers.add(lp);
+        lp.pool = this;
+        this.nbr_parsers = 1;
+    }
+    
+    /**
+     * Construct an empty pool on the grammar of a parser which is not 
+     * part of the pool, its parsers are all created on demand.
+     */
+    public RECKParserPool(ParserData pd) {
+        this.pd = pd;
+    }
+    
+    /**
+     * Take a parser from the pool, a new one is created 
+     * on the shared grammar if all the parsers are in use.
+     */
+    public RECKLexicalizedParser acquire() {
+        synchronized (idleParsers) {
+            if (!idleParsers.isEmpty())
+                return (RECKLexicalizedParser)idleParsers.removeFirst();
+            nbr_parsers++;
+        }
+        RECKLexicalizedParser parser = null;
+        synchronized (NUMBERER_LOCK) {
+            parser = new RECKLexicalizedParser(pd);
+        }
+        parser.pool = this;
+        return parser;
+    }
+    
+    /**
+     * Give back a parser taken from the pool.
+     */
+    public void release(RECKLexicalizedParser parser) {
+        synchronized (idleParsers) {
+            idleParsers.addFirst(parser);
+        }
+    }
+    
+    /** Get the number of parsers created by the pool. */
+    public int size() {
+        synchronized (idleParsers) {
+            return nbr_parsers;
+        }
+    }
+    
+    /**
+     * The lock under which the parsers of all the pools are built and
+     * parse, guarding the numberers of the Stanford parser
+     */
+    public static final Object NUMBERER_LOCK = new Object();
+    
+    /**
+     * The grammar shared by all the parsers
+     */
+    private final ParserData pd;
+    
+    private final LinkedList idleParsers = new LinkedList();
+    
+    private int nbr_parsers = 0;
+}
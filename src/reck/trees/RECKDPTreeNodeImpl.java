@@ -29,6 +29,8 @@ import edu.stanford.nlp.ling.StringLabel;
 import edu.stanford.nlp.trees.LabeledScoredTreeFactory;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.trees.TreeFactory;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -46,6 +48,8 @@ import reck.util.Charseq;
  */
 public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable {
 
+    private static final long serialVersionUID = -6566535677712942135L;
+
     /**
      * A leaf node should have a zero-length array for its
      * children. For efficiency, subclasses can use this array as a
@@ -156,7 +160,21 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
      */
     @Override
     public RECKDPTreeNodeImpl clone() {
-        RECKDPTreeNodeImpl rtree = null;
+        Tree kids[] = children();
+        Tree newKids[] = new Tree[kids.length];
+        for (int i = 0, n = kids.length; i < n; i++) {
+            newKids[i] = ((RECKDPTreeNodeImpl)kids[i]).clone();
+        }
+        
+        return copyNode(newKids);
+    }
+    
+    /**
+     * Returns a copy of this node alone, with the given children.
+     * Children already attached to a tree are shared: they keep their parent,
+     * so that a copy can reuse the subtrees of a parse tree.
+     */
+    public RECKDPTreeNodeImpl copyNode(Tree[] newKids) {
         Label newLabel = null;
         Charseq newPosition = null;
 
@@ -165,14 +183,13 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
         if (position != null)
             newPosition = position.clone();
         
-        Tree kids[] = children();
-        List<Tree> newKids = new ArrayList<Tree>(kids.length);
-        for (int i = 0, n = kids.length; i < n; i++) {
-            newKids.add(((RECKDPTreeNodeImpl)kids[i]).clone());
+        RECKDPTreeNodeImpl copy = new RECKDPTreeNodeImpl(newLabel, idx, role, constituent, newPosition);
+        copy.daughterTrees = newKids;
+        for (int i = 0; i < newKids.length; i++) {
+            if (newKids[i] instanceof RECKDPTreeNodeImpl && ((RECKDPTreeNodeImpl)newKids[i]).parent == null)
+                ((RECKDPTreeNodeImpl)newKids[i]).parent = copy;
         }
-        rtree = new RECKDPTreeNodeImpl(newLabel, idx, role, constituent, newKids, newPosition); 
-        
-        return rtree;
+        return copy;
     }
     
     public boolean isEntity() {
@@ -212,15 +229,49 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
      * @param children An array of child trees
      */
     public void setChildren(Tree[] children) {
+        if (daughterTrees != null) {
+            for (int i = 0; i < daughterTrees.length; i++)
+                release(daughterTrees[i]);
+        }
         if (children == null) {
             System.err.println("Warning -- you tried to set the children of a LabeledScoredTreeNode to null.\nYou really should be using a zero-length array instead.\nConsider building a LabeledScoredTreeLeaf instead.");
             daughterTrees = ZEROCHILDREN;
         } 
         else {
             daughterTrees = children;
+            for (int i = 0; i < children.length; i++)
+                adopt(children[i]);
         }
     }
     
+    /**
+     * Replaces the i'th child of this node, keeping the parent
+     * of the new and the old child.
+     *
+     * @param i The index of the child
+     * @param t The new child
+     * @return The old child
+     */
+    public Tree setChild(int i, Tree t) {
+        Tree old = daughterTrees[i];
+        daughterTrees[i] = t;
+        release(old);
+        adopt(t);
+        return old;
+    }
+    
+    /** Make this node the parent of a child. */
+    private void adopt(Tree child) {
+        if (child instanceof RECKDPTreeNodeImpl)
+            ((RECKDPTreeNodeImpl)child).parent = this;
+    }
+    
+    /** Forget this node as the parent of a child no longer attached to it. */
+    private void release(Tree child) {
+        if (child instanceof RECKDPTreeNodeImpl && ((RECKDPTreeNodeImpl)child).parent == this)
+            ((RECKDPTreeNodeImpl)child).parent = null;
+    }
+    
     /**
      * Destructively removes all the children from the left the index i
      * Note
@@ -516,6 +567,48 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
         return n;
     }
     
+    /**
+     * Number the nodes of this subtree in preorder, starting from
+     * <code>first</code>, so that <code>subTreeContains</code> can be answered
+     * without walking the tree. Returns the number following the last node.
+     */
+    public int numberNodes(int first) {
+        preorder = first++;
+        for (int i = 0; i < daughterTrees.length; i++) {
+            if (daughterTrees[i] instanceof RECKDPTreeNodeImpl)
+                first = ((RECKDPTreeNodeImpl)daughterTrees[i]).numberNodes(first);
+        }
+        lastPreorder = first - 1;
+        return first;
+    }
+    
+    /** The preorder number given by <code>numberNodes</code>, -1 if none. */
+    public int getPreorder() {
+        return preorder;
+    }
+    
+    /** The preorder number of the last node of this subtree. */
+    public int getLastPreorder() {
+        return lastPreorder;
+    }
+    
+    /**
+     * Whether a node is this node or one of its descendants, by identity.
+     * Both must have been numbered by the same call to <code>numberNodes</code>.
+     */
+    public boolean subTreeContains(RECKDPTreeNodeImpl node) {
+        return node.preorder >= preorder && node.preorder <= lastPreorder;
+    }
+    
+    /**
+     * Return the parent of the node, kept when the node is attached by
+     * <code>setChildren</code> or <code>setChild</code>: the node it was
+     * last attached to, or <code>null</code> for a root.
+     */
+    public RECKDPTreeNodeImpl parent() {
+        return parent;
+    }
+    
   /**
    * Return the parent of the tree node.  This routine will traverse
    * a tree (depth first) from the given <code>root</code>, and will
@@ -523,12 +616,20 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
    * class stores parents.  It will only return <code>null</code> if this
    * node is the <code>root</code> node, or if this node is not
    * contained within the tree rooted at <code>root</code>.
+   * The kept parent is returned without any search when it links
+   * the node up to the <code>root</code>.
    *
    * @param root The root node of the whole Tree
    * @return the parent <code>Tree</code> node if any;
    *         else <code>null</code>
    */
     public RECKDPTreeNodeImpl parent(RECKDPTreeNodeImpl root) {
+        RECKDPTreeNodeImpl node = this;
+        while (node != root && node.parent != null)
+            node = node.parent;
+        if (node == root)
+            return (this == root) ? null : parent;
+        
         Tree[] kids = root.children();
         RECKDPTreeNodeImpl newKids[] = new RECKDPTreeNodeImpl[kids.length];
         
@@ -552,8 +653,20 @@ public class RECKDPTreeNodeImpl extends Tree implements Cloneable, Serializable
         return null;
     }
    
+    /** Restore the parent of the children, which is not serialized. */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        preorder = -1;
+        lastPreorder = -2;
+        for (int i = 0; i < daughterTrees.length; i++)
+            adopt(daughterTrees[i]);
+    }
+   
     private int idx = -1;
     private String role = "";
     private String constituent = "";
     private Charseq position = null;
+    private transient RECKDPTreeNodeImpl parent = null;
+    private transient int preorder = -1;
+    private transient int lastPreorder = -2;
 }
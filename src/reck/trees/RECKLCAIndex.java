@@ -0,0 +1,123 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+package reck.trees;
+
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * An index of a constituent or dependency parse tree answering lowest
+ * common ancestor queries in constant time.
+ * <p>
+ * The nodes are numbered in preorder. For two nodes numbered u &lt; v, the
+ * lowest common ancestor is the parent of the least deep node numbered in
+ * (u, v], found in a sparse table of range minima built once for the tree.
+ * The index is valid until the tree is changed.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class RECKLCAIndex {
+
+    /**
+     * Number the nodes of a tree and build its index.
+     */
+    public RECKLCAIndex(Tree root) {
+        int n;
+        if (root instanceof RECKCTTreeNodeImpl)
+            n = ((RECKCTTreeNodeImpl)root).numberNodes(0);
+        else
+            n = ((RECKDPTreeNodeImpl)root).numberNodes(0);
+
+        nodes = new Tree[n];
+        depths = new int[n];
+        parents = new int[n];
+        addNodes(root, root.getClass(), 0, -1, 0);
+
+        int levels = 1;
+        while ((1 << levels) <= n)
+            levels++;
+        minima = new int[levels][];
+        minima[0] = new int[n];
+        for (int i = 0; i < n; i++)
+            minima[0][i] = i;
+        for (int k = 1; k < levels; k++) {
+            int half = 1 << (k - 1);
+            minima[k] = new int[n - (1 << k) + 1];
+            for (int i = 0; i < minima[k].length; i++)
+                minima[k][i] = shallower(minima[k - 1][i], minima[k - 1][i + half]);
+        }
+    }
+
+    /**
+     * Add a subtree in preorder, as numberNodes numbers it.
+     * Returns the number following its last node.
+     */
+    private int addNodes(Tree node, Class nodeClass, int depth, int parent, int number) {
+        int preorder = number++;
+        nodes[preorder] = node;
+        depths[preorder] = depth;
+        parents[preorder] = parent;
+
+        Tree[] kids = node.children();
+        for (int i = 0; i < kids.length; i++) {
+            if (nodeClass.isInstance(kids[i]))
+                number = addNodes(kids[i], nodeClass, depth + 1, preorder, number);
+        }
+        return number;
+    }
+
+    private int shallower(int i, int j) {
+        return (depths[j] < depths[i]) ? j : i;
+    }
+
+    /** Number of nodes in the tree */
+    public int size() {
+        return nodes.length;
+    }
+
+    /** The node of a given preorder number */
+    public Tree getNode(int preorder) {
+        return nodes[preorder];
+    }
+
+    /**
+     * The lowest common ancestor of two nodes given by their preorder numbers,
+     * a node being an ancestor of itself.
+     */
+    public Tree lowestCommonAncestor(int preorder1, int preorder2) {
+        if (preorder1 == preorder2)
+            return nodes[preorder1];
+        int u = Math.min(preorder1, preorder2), v = Math.max(preorder1, preorder2);
+
+        int k = 31 - Integer.numberOfLeadingZeros(v - u);
+        int shallowest = shallower(minima[k][u + 1], minima[k][v - (1 << k) + 1]);
+        return nodes[parents[shallowest]];
+    }
+
+    private Tree[] nodes = null;
+    private int[] depths = null;
+    private int[] parents = null;
+
+    /** minima[k][i] is the least deep node numbered in [i, i + 2^k) */
+    private int[][] minima = null;
+}
@@ -40,6 +40,8 @@ import reck.util.Charseq;
  */
 public class RECKParseTreeImpl implements RECKParseTree, Cloneable, Serializable {
     
+    private static final long serialVersionUID = -4446699129184086022L;
+
     public RECKParseTreeImpl(List sentence, ArrayList dpList, Charseq position, RECKDPTreeNodeImpl DPparseTree, RECKCTTreeNodeImpl CTparseTree) {
         this.sentence = sentence;
         this.dpList = dpList;
@@ -49,6 +51,20 @@ public class RECKParseTreeImpl implements RECKParseTree, Cloneable, Serializable
         this.buildDPTreeList();
     }
     
+    /**
+     * Construct from a list of dependency nodes already ordered by index,
+     * as it is read from a serialized document.
+     */
+    public RECKParseTreeImpl(List sentence, ArrayList dpList, Charseq position, RECKDPTreeNodeImpl DPparseTree, 
+            RECKCTTreeNodeImpl CTparseTree, ArrayList reckDPTreeList) {
+        this.sentence = sentence;
+        this.dpList = dpList;
+        this.position = position;
+        this.DPparseTree = DPparseTree;
+        this.CTparseTree = CTparseTree;
+        this.reckDPTreeList = reckDPTreeList;
+    }
+    
     public Charseq getPosition() {
         return position;
     }
@@ -65,6 +81,7 @@ public class RECKParseTreeImpl implements RECKParseTree, Cloneable, Serializable
     public void setDPParseTree(RECKDPTreeNodeImpl DPparseTree) {
         this.DPparseTree = DPparseTree;
         this.buildDPTreeList();
+        this.DPindex = null;
     }
 
     public void buildDPTreeList() {
@@ -134,6 +151,37 @@ public class RECKParseTreeImpl implements RECKParseTree, Cloneable, Serializable
     
     public void setCTParseTree(RECKCTTreeNodeImpl CTparseTree) {
         this.CTparseTree = CTparseTree;
+        this.CTindex = null;
+    }
+    
+    /**
+     * The index of the constituent tree for path-enclosed tree extraction,
+     * built once until the tree is set or <code>treesChanged</code> is called.
+     */
+    public synchronized RECKLCAIndex getCTIndex() {
+        if (CTindex == null)
+            CTindex = new RECKLCAIndex(CTparseTree);
+        return CTindex;
+    }
+    
+    /**
+     * The index of the dependency tree for path-enclosed tree extraction,
+     * built once until the tree is set or <code>treesChanged</code> is called.
+     */
+    public synchronized RECKLCAIndex getDPIndex() {
+        if (DPindex == null)
+            DPindex = new RECKLCAIndex(DPparseTree);
+        return DPindex;
+    }
+    
+    /** To be called when a parse tree is changed in place. */
+    public synchronized void treesChanged() {
+        CTindex = null;
+        DPindex = null;
+    }
+    
+    public List getSentence() {
+        return sentence;
     }
     
     public ArrayList getDependencyList() {
@@ -190,4 +238,6 @@ public class RECKParseTreeImpl implements RECKParseTree, Cloneable, Serializable
     Hashtable CTmentionTrees = new Hashtable();
     Hashtable DPmentionTrees = new Hashtable();
     ArrayList<RECKDPTreeNodeImpl> reckDPTreeList = new ArrayList();
+    transient RECKLCAIndex CTindex = null;
+    transient RECKLCAIndex DPindex = null;
 }
@@ -281,16 +281,12 @@ public class RECKTreePrint {
     }
   }
 
-  /** Print the internal part of a tree having already identified it.
-   *  The ID and outer XML element is printed wrapping this method, but none
-   *  of the internal content.
-   *
-   * @param t The tree to print. Now known to be non-null
-   * @param pw Where to print it to
-   * @param inXml Whether to use XML style printing
-   */
-  
-    public ArrayList getDependencies(final Tree t, ArrayList reckTreeList, Charseq sentencePosition) {
+    /**
+     * Apply the transforms set by the options to a parse tree
+     * (removing the top bracket, stemming, lexicalizing),
+     * giving the tree from which the grammatical structure is computed.
+     */
+    private Tree transformTree(final Tree t) {
         Tree outputTree = t;
 
         if (propertyToBoolean(options, "removeTopBracket")) {
@@ -326,22 +322,24 @@ public class RECKTreePrint {
                     TreeFunctions.getLabeledTreeToStringLabeledTreeFunction();
             outputTree = a.apply(outputTree);
         }
-
-        Tree outputPSTree = outputTree;  // variant with head-marking, translations
-
-        if (markHeadNodes) {
-            outputPSTree = markHeadNodes(outputPSTree);
-        }
-/*
-        if (propertyToBoolean(options, "xml")) {
-            if (formats.containsKey("typedDependencies")) {
-                GrammaticalStructure gs = gsf.newGrammaticalStructure(outputTree);
-                print(gs.typedDependencies(), "xml", pw);
-            }
-        }*/
         
-        GrammaticalStructure gs = gsf.newGrammaticalStructure(outputTree);
-        Collection<TypedDependency> dependencies = gs.typedDependencies();
+        return outputTree;
+    }
+    
+    /**
+     * Get the typed dependencies of a parse tree, not ordered.
+     */
+    public ArrayList getDependencies(final Tree t, ArrayList reckTreeList, Charseq sentencePosition) {
+        GrammaticalStructure gs = gsf.newGrammaticalStructure(transformTree(t));
+        
+        return toRECKDependencies(gs.typedDependencies());
+    }
+    
+    /**
+     * Convert the typed dependencies of a <code>GrammaticalStructure</code>
+     * to <code>RECKTypedDependency</code>, keeping their order.
+     */
+    private static ArrayList toRECKDependencies(Collection<TypedDependency> dependencies) {
         ArrayList reckTDs = new ArrayList();
         
         for (TypedDependency td : dependencies) {
@@ -357,69 +355,78 @@ public class RECKTreePrint {
         return reckTDs;
     }
     
-  /** Print the internal part of a tree having already identified it.
-   *  The ID and outer XML element is printed wrapping this method, but none
-   *  of the internal content.
-   *
-   * @param t The tree to print. Now known to be non-null
-   * @param pw Where to print it to
-   * @param inXml Whether to use XML style printing
-   */
-  
+    /**
+     * Get the dependency tree of a parse tree.
+     */
     public RECKDPTreeNodeImpl convertToDependencyTree(final Tree t, ArrayList reckTreeList, Charseq sentencePosition) {
-        Tree outputTree = t;
-
-        if (propertyToBoolean(options, "removeTopBracket")) {
-            String s = outputTree.label().value();
-            if (tlp.isStartSymbol(s)) {
-                if (outputTree.isUnaryRewrite()) {
-                    outputTree = outputTree.firstChild();
-                } 
-                else {
-                    // It's not quite clear what to do if the tree isn't unary at the top
-                    // but we then don't strip the ROOT symbol, since that seems closer
-                    // than losing part of the tree altogether....
-                    System.err.println("RECKTreePrint: can't remove top bracket: not unary");
-                }
-            }
-            // Note that RECKTreePrint is also called on dependency trees that have
-            // a word as the root node, and so we don't error if there isn't
-            // the root symbol at the top; rather we silently assume that this
-            // is a dependency tree!!
-        }
-        if (stem) {
-            stemmer.visitTree(outputTree);
+        return convertToDependencyTree(t, getDependencies(t, reckTreeList, sentencePosition), reckTreeList, sentencePosition);
+    }
+    
+    /**
+     * Get both the typed dependencies and the dependency tree of a parse tree,
+     * the tree is transformed and its grammatical structure is computed once.
+     */
+    public DependencyParse convertToDependencies(final Tree t, ArrayList reckTreeList, Charseq sentencePosition) {
+        ArrayList dependencies = getDependencies(t, reckTreeList, sentencePosition);
+        return new DependencyParse(t, dependencies, reckTreeList, sentencePosition);
+    }
+    
+    /**
+     * Get both the typed dependencies and the dependency tree of a parse tree
+     * from its typed dependencies already known, as given by 
+     * <code>getDependencies</code>.
+     */
+    public DependencyParse convertToDependencies(final Tree t, ArrayList dependencies, 
+            ArrayList reckTreeList, Charseq sentencePosition) {
+        return new DependencyParse(t, dependencies, reckTreeList, sentencePosition);
+    }
+    
+    /**
+     * The typed dependencies and the dependency tree of a parse tree.
+     */
+    public final class DependencyParse {
+        
+        DependencyParse(final Tree t, ArrayList dependencies, ArrayList reckTreeList, Charseq sentencePosition) {
+            this.dependencies = dependencies;
+            if (dependencies.size() > 0)
+                this.orderedDependencies = orderDependencies(dependencies, t.getLeaves().size());
+            else
+                this.orderedDependencies = new ArrayList(dependencies);
+            this.DPTree = convertToDependencyTree(t, dependencies, reckTreeList, sentencePosition);
         }
-        if (lexicalize) {
-            Function<Tree, Tree> a =
-                    TreeFunctions.getLabeledTreeToCategoryWordTagTreeFunction();
-            outputTree = a.apply(outputTree);
-            outputTree.percolateHeads(hf);
+        
+        /** Get the typed dependencies, as given by the grammatical structure. */
+        public ArrayList getDependencies() {
+            return dependencies;
         }
-
-        if (!lexicalize) { // delexicalize the output tree
-            Function<Tree, Tree> a =
-                    TreeFunctions.getLabeledTreeToStringLabeledTreeFunction();
-            outputTree = a.apply(outputTree);
+        
+        /** Get the typed dependencies ordered by dependent, one for each leaf. */
+        public ArrayList getOrderedDependencies() {
+            return orderedDependencies;
         }
-
-        Tree outputPSTree = outputTree;  // variant with head-marking, translations
-
-        if (markHeadNodes) {
-            outputPSTree = markHeadNodes(outputPSTree);
+        
+        /** Get the dependency tree. */
+        public RECKDPTreeNodeImpl getDPTree() {
+            return DPTree;
         }
-/*
-        if (propertyToBoolean(options, "xml")) {
-            if (formats.containsKey("typedDependencies")) {
-                GrammaticalStructure gs = gsf.newGrammaticalStructure(outputTree);
-                print(gs.typedDependencies(), "xml", pw);
-            }
-        }*/
         
+        private final ArrayList dependencies;
+        
+        private final ArrayList orderedDependencies;
+        
+        private final RECKDPTreeNodeImpl DPTree;
+    }
+    
+    /**
+     * Build the dependency tree of a parse from its typed dependencies,
+     * as given by <code>getDependencies</code> before being ordered.
+     * No <code>GrammaticalStructure</code> is computed.
+     */
+    public RECKDPTreeNodeImpl convertToDependencyTree(final Tree t, Collection<RECKTypedDependency> dependencies, 
+            ArrayList reckTreeList, Charseq sentencePosition) {
         List leaves = t.getLeaves();
-        GrammaticalStructure gs = gsf.newGrammaticalStructure(outputTree);
 
-	RECKDPTreeNodeImpl top = buildDependencyStructure(t, gs.typedDependencies(), reckTreeList, leaves);
+        RECKDPTreeNodeImpl top = buildDependencyStructure(t, dependencies, reckTreeList, leaves);
         RECKDPTreeNodeImpl root = new RECKDPTreeNodeImpl(new StringLabel("ROOT"), sentencePosition);
         root.setIndex(-1);
         root.setRole("root");
@@ -432,28 +439,26 @@ public class RECKTreePrint {
 
     }
     
-    private RECKDPTreeNodeImpl buildDependencyStructure(final Tree t, Collection<TypedDependency> dependencies, ArrayList reckTreeList, List leaves) {
+    private RECKDPTreeNodeImpl buildDependencyStructure(final Tree t, Collection<RECKTypedDependency> dependencies, ArrayList reckTreeList, List leaves) {
         if (dependencies.size() == 0)
             return null;
 
         ArrayList parentList = new ArrayList();
         ArrayList daughterList = new ArrayList();
         
-        for (TypedDependency td : dependencies) {
+        for (RECKTypedDependency td : dependencies) {
             // td.reln();      // GrammaticalRelation
 
-            MapLabel dep = (MapLabel)td.dep().label();
-            int depIndex = ((Integer) dep.map().get(MapLabel.INDEX_KEY)).intValue();
+            int depIndex = td.dep().intValue();
             RECKDPTreeNodeImpl depNode = (RECKDPTreeNodeImpl)reckTreeList.get(depIndex - 1);
             depNode.setIndex(depIndex - 1);
-            depNode.setRole(td.reln().toString());
+            depNode.setRole(td.reln());
             depNode.setConstituent(((Tree)leaves.get(depIndex - 1)).parent(t).label().value());
             
             if (!daughterList.contains(depNode))
                 daughterList.add(depNode);
 
-            MapLabel gov = (MapLabel)td.gov().label();
-            int govIndex = ((Integer) gov.map().get(MapLabel.INDEX_KEY)).intValue();
+            int govIndex = td.gov().intValue();
             RECKDPTreeNodeImpl govNode = (RECKDPTreeNodeImpl)reckTreeList.get(govIndex - 1);
             govNode.addChild(depNode);
             govNode.setIndex(govIndex - 1);
@@ -0,0 +1,150 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+
+package reck.util;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * A dictionary of feature strings numbered in the order they are added,
+ * as in a list, but found by hashing.
+ * <p>
+ * The strings are kept in an array by number, and their numbers in an
+ * open-addressing table with linear probing, so that <code>indexOf</code>
+ * takes constant time instead of scanning the list.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class FeatureDictionary implements Serializable {
+
+    private static final long serialVersionUID = -6288011459253367115L;
+
+    public FeatureDictionary() {
+        this(16);
+    }
+
+    public FeatureDictionary(int capacity) {
+        keys = new String[Math.max(capacity, 1)];
+        int n = 4;
+        while (n < 2 * capacity)
+            n <<= 1;
+        table = new int[n];
+    }
+
+    /**
+     * Build a dictionary numbering the strings of a list as
+     * <code>List.indexOf</code> does, the first of duplicates winning.
+     */
+    public FeatureDictionary(List list) {
+        this(list.size());
+        for (int i = 0; i < list.size(); i++) {
+            String key = (String)list.get(i);
+            keys[size++] = key;
+            if (key != null && indexOf(key) == -1)
+                insert(key, i);
+        }
+    }
+
+    /** Number of strings in the dictionary */
+    public int size() {
+        return size;
+    }
+
+    /** The string of a given number */
+    public String get(int index) {
+        if (index >= size)
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        return keys[index];
+    }
+
+    /**
+     * The number of a string, or -1 if it is not in the dictionary.
+     */
+    public int indexOf(Object o) {
+        if (!(o instanceof String))
+            return -1;
+        String key = (String)o;
+        int mask = table.length - 1;
+        for (int h = hash(key) & mask; table[h] != 0; h = (h + 1) & mask) {
+            if (key.equals(keys[table[h] - 1]))
+                return table[h] - 1;
+        }
+        return -1;
+    }
+
+    public boolean contains(Object o) {
+        return indexOf(o) != -1;
+    }
+
+    /**
+     * Add a string if it is not in the dictionary yet.
+     * Returns its number.
+     */
+    public int add(String key) {
+        int index = indexOf(key);
+        if (index != -1)
+            return index;
+
+        if (size == keys.length) {
+            String[] newKeys = new String[keys.length << 1];
+            System.arraycopy(keys, 0, newKeys, 0, size);
+            keys = newKeys;
+        }
+        keys[size] = key;
+        if (2 * (size + 1) > table.length)
+            rehash(table.length << 1);
+        insert(key, size);
+        return size++;
+    }
+
+    private void insert(String key, int index) {
+        int mask = table.length - 1;
+        int h = hash(key) & mask;
+        while (table[h] != 0)
+            h = (h + 1) & mask;
+        table[h] = index + 1;
+    }
+
+    private void rehash(int n) {
+        int[] oldTable = table;
+        table = new int[n];
+        for (int i = 0; i < oldTable.length; i++) {
+            if (oldTable[i] != 0)
+                insert(keys[oldTable[i] - 1], oldTable[i] - 1);
+        }
+    }
+
+    /** Spread the bits of the hash code over the low bits used by the table */
+    private static int hash(String key) {
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private String[] keys = null;
+    private int size = 0;
+
+    /** The numbers plus one of the strings, 0 for an empty slot */
+    private int[] table = null;
+}
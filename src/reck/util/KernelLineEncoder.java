@@ -0,0 +1,171 @@
+// Relation Extraction using Composite Kernel -- RECK
+// -- a kernel-based relation extractor
+// Copyright (c) 2011
+// Truc-Vien T. Nguyen. All Rights Reserved.
+//
+// RECK is free software: you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation, either version 3 of the License, or
+// (at your option) any later version.
+
+// RECK is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+
+// You should have received a copy of the GNU General Public License
+// along with RECK.  If not, see <http://www.gnu.org/licenses/>.
+//
+// For more information, bug reports, fixes, contact:
+//    Truc-Vien T. Nguyen
+//    trucvien.nguyen@gmail.com
+//    http://sites.google.com/site/trucviennguyen/
+
+
+package reck.util;
+
+import edu.stanford.nlp.trees.Tree;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * An encoder of the lines of SVM-light-TK files, writing trees,
+ * the |BT|, |ET|, |BV|, |EV| markers and feature pairs straight to a byte
+ * buffer which is reused from one line to the next.
+ * <p>
+ * Text is encoded in the default charset, as an <code>OutputStreamWriter</code>
+ * would, so that files are written byte for byte as before.
+ *
+ * @author Truc-Vien T. Nguyen
+ */
+public class KernelLineEncoder {
+
+    /** The line separator of <code>BufferedWriter.newLine()</code> */
+    public static final byte[] NEWLINE = System.getProperty("line.separator").getBytes();
+
+    public KernelLineEncoder() {
+        this(1024);
+    }
+
+    public KernelLineEncoder(int size) {
+        buffer = new byte[size];
+    }
+
+    /** Empty the buffer to encode a new line */
+    public KernelLineEncoder reset() {
+        count = 0;
+        return this;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    private void ensureCapacity(int n) {
+        if (count + n > buffer.length) {
+            byte[] newBuffer = new byte[Math.max(buffer.length << 1, count + n)];
+            System.arraycopy(buffer, 0, newBuffer, 0, count);
+            buffer = newBuffer;
+        }
+    }
+
+    public KernelLineEncoder append(char c) {
+        if (c < 0x80) {
+            ensureCapacity(1);
+            buffer[count++] = (byte)c;
+            return this;
+        }
+        return append(String.valueOf(c));
+    }
+
+    /** Append a string, byte by byte when it is ASCII */
+    public KernelLineEncoder append(String s) {
+        int n = s.length();
+        ensureCapacity(n);
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c >= 0x80) {
+                count -= i;
+                return append(s.getBytes(charset));
+            }
+            buffer[count++] = (byte)c;
+        }
+        return this;
+    }
+
+    /** Append an integer in decimal */
+    public KernelLineEncoder append(int i) {
+        if (i < 0) {
+            if (i == Integer.MIN_VALUE)
+                return append(Integer.toString(i));
+            append('-');
+            i = -i;
+        }
+        int n = 1;
+        for (int j = i; j >= 10; j /= 10)
+            n++;
+        ensureCapacity(n);
+        for (int k = count + n - 1; k >= count; k--) {
+            buffer[k] = (byte)('0' + i % 10);
+            i /= 10;
+        }
+        count += n;
+        return this;
+    }
+
+    public KernelLineEncoder append(byte[] b) {
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, buffer, count, b.length);
+        count += b.length;
+        return this;
+    }
+
+    /**
+     * Append a tree in brackets, as <code>toStringBuffer</code> prints it.
+     */
+    public KernelLineEncoder appendTree(Tree tree) {
+        append('(');
+        append(tree.nodeString());
+        Tree[] kids = tree.children();
+        for (int i = 0; i < kids.length; i++) {
+            append(' ');
+            appendTree(kids[i]);
+        }
+        return append(')');
+    }
+
+    /** Append a feature pair " index:value" */
+    public KernelLineEncoder appendFeature(int index, int value) {
+        return append(' ').append(index).append(':').append(value);
+    }
+
+    /** Test whether the line holds some ASCII text */
+    public boolean contains(String s) {
+        int n = s.length();
+        for (int i = 0; i + n <= count; i++) {
+            int j = 0;
+            while (j < n && buffer[i + j] == (byte)s.charAt(j))
+                j++;
+            if (j == n)
+                return true;
+        }
+        return false;
+    }
+
+    /** A copy of the line encoded so far */
+    public byte[] toByteArray() {
+        byte[] b = new byte[count];
+        System.arraycopy(buffer, 0, b, 0, count);
+        return b;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, count);
+    }
+
+    private static final Charset charset = Charset.defaultCharset();
+
+    private byte[] buffer = null;
+    private int count = 0;
+}
@@ -24,7 +24,12 @@
 package reck.util;
 
 import edu.stanford.nlp.parser.lexparser.Options;
+
+import java.io.File;
+
 import reck.parser.lexparser.RECKLexicalizedParser;
+import reck.parser.lexparser.RECKParseCache;
+import reck.parser.lexparser.RECKParserPool;
 
 /**
  * A set of parameters to use with the Stanford Parser.
@@ -33,5 +38,26 @@ import reck.parser.lexparser.RECKLexicalizedParser;
  */
 public final class ParserConstants {
     public static final Options op = new Options();
-    public static final RECKLexicalizedParser lp = new RECKLexicalizedParser("englishPCFG.ser.gz", op);
+    public static final String grammarFilename = "englishPCFG.ser.gz";
+    public static final RECKLexicalizedParser lp = new RECKLexicalizedParser(grammarFilename, op);
+    
+    /**
+     * Parsers sharing the grammar of <code>lp</code>, 
+     * one for each thread parsing at the same time.
+     */
+    public static final RECKParserPool parserPool = new RECKParserPool(lp);
+    
+    private static RECKParseCache parseCache = null;
+    
+    /**
+     * Get the cache of parses set by the program parameters,
+     * <code>null</code> if no cache is used.
+     */
+    public static synchronized RECKParseCache getParseCache() {
+        RECKParameters params = RECKParameters.getRECKParameters();
+        if (parseCache == null && params != null && params.parseCacheFolder != null)
+            parseCache = new RECKParseCache(new File(params.parseCacheFolder), 
+                    params.parseCacheSize * 1024L * 1024L, grammarFilename);
+        return parseCache;
+    }
 }
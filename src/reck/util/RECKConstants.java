@@ -36,7 +36,9 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Comparator;
 import java.util.GregorianCalendar;
 import reck.Entity;
 import reck.Mention;
@@ -259,6 +261,18 @@ public final class RECKConstants
         treeTypes.add("dependency-based constituents");
     }
     
+    /**
+     * Dictionaries of the types above, numbering them as indexOf does,
+     * used to find feature indexes by hashing.
+     */
+    public static final FeatureDictionary entityTypeDictionary = new FeatureDictionary(entityTypes);
+    public static final FeatureDictionary entitySubTypeDictionary = new FeatureDictionary(entitySubTypes);
+    public static final FeatureDictionary relationTypeDictionary = new FeatureDictionary(relationTypes);
+    public static final FeatureDictionary mentionTypeDictionary = new FeatureDictionary(mentionTypes);
+    public static final FeatureDictionary mentionLDCTypeDictionary = new FeatureDictionary(mentionLDCTypes);
+    public static final FeatureDictionary mentionRoleDictionary = new FeatureDictionary(mentionRoles);
+    public static final FeatureDictionary mentionReferenceDictionary = new FeatureDictionary(mentionReferences);
+    
     /* kernel type */
     public static final int TREE_KERNEL = 0;
     public static final int COMPOSITE_KERNEL = 1;
@@ -358,8 +372,8 @@ public final class RECKConstants
         Entity e1 = ment1.getEntity();
         Entity e2 = ment2.getEntity();
         
-        int eid1 = entityTypes.indexOf(e1.getType());
-        int eid2 = entityTypes.indexOf(e2.getType());
+        int eid1 = entityTypeDictionary.indexOf(e1.getType());
+        int eid2 = entityTypeDictionary.indexOf(e2.getType());
         
         boolean incr = true;
         
@@ -367,8 +381,8 @@ public final class RECKConstants
             if (eid1 > eid2)
                 incr = false;
             else {
-                int mid1 = mentionTypes.indexOf(ment1.getType());
-                int mid2 = mentionTypes.indexOf(ment2.getType());
+                int mid1 = mentionTypeDictionary.indexOf(ment1.getType());
+                int mid2 = mentionTypeDictionary.indexOf(ment2.getType());
                 
                 if (mid1 > mid2)
                     incr = false;
@@ -381,6 +395,34 @@ public final class RECKConstants
         return incr;
     }
     
+    /**
+     * Order of positions given by their start and end offsets: by start, then
+     * by end, equal positions being taken from the last to the first. This is
+     * the order obtained by inserting the positions one by one before the
+     * first position not lower, as mention lists do.
+     */
+    public static int[] sortByOffsets(final long[] starts, final long[] ends) {
+        Integer[] indexes = new Integer[starts.length];
+        for (int i = 0; i < indexes.length; i++)
+            indexes[i] = Integer.valueOf(i);
+        
+        Arrays.sort(indexes, new Comparator() {
+            public int compare(Object o1, Object o2) {
+                int i = ((Integer)o1).intValue(), j = ((Integer)o2).intValue();
+                if (starts[i] != starts[j])
+                    return (starts[i] < starts[j]) ? -1 : 1;
+                if (ends[i] != ends[j])
+                    return (ends[i] < ends[j]) ? -1 : 1;
+                return j - i;
+            }
+        });
+        
+        int[] order = new int[indexes.length];
+        for (int i = 0; i < order.length; i++)
+            order[i] = indexes[i].intValue();
+        return order;
+    }
+    
     public static boolean DPMatching(Mention mention, Long start, Long end) {
 
         Charseq hwPos = mention.getHwPosition();
@@ -33,6 +33,8 @@ import java.util.StringTokenizer;
  */
 public class RECKParameters implements Cloneable, Serializable
 {
+    private static final long serialVersionUID = -4184651868015714988L;
+
     public int mode = 0;
 
     /** 
@@ -52,6 +54,75 @@ public class RECKParameters implements Cloneable, Serializable
      */
     public int nbfolds = 5;
     
+    /**
+     * option "-w"
+     * the number of worker threads used to process documents,
+     * or to read serialized files
+     */
+    public int nbthreads = 1;
+    
+    /**
+     * option "-p"
+     * the number of threads used to parse the sentences of a document
+     */
+    public int nbparsethreads = 1;
+    
+    /**
+     * option "-c"
+     * the folder of the parse cache, no cache is used if it is not set
+     */
+    public String parseCacheFolder = null;
+    
+    /**
+     * option "-m"
+     * the maximum size of the parse cache, in MB
+     */
+    public int parseCacheSize = 1024;
+    
+    /**
+     * option "-x"
+     * 1: export the text of each document to a .txt file next to it
+     * 0: the text is only kept in memory
+     */
+    public boolean exportText = false;
+    
+    /**
+     * option "-f"
+     * 1: write the .document files in the compact binary format
+     * 0: write them with Java serialization
+     */
+    public boolean binaryFormat = true;
+    
+    /**
+     * option "-e"
+     * 1: write the instances of each fold once, to train.kernel and test.kernel,
+     *    with one file of labels per relation type, expanded in mode 8
+     * 0: write the training and test files of each relation type in full
+     */
+    public boolean sharedInstances = false;
+    
+    /**
+     * option "-k"
+     * the tree_kernels.param file of the kernels computed in modes 9 and 10
+     */
+    public String treeKernelParamFilename = "learning" + RECKConstants.fileSeparator + "tree_kernels.param";
+    
+    /**
+     * option "-N"
+     * the normalization of the kernels computed in modes 9 and 10,
+     * the option -N given to svm_learn
+     * 0: none, 1: trees, 2: vectors, 3: trees and vectors
+     */
+    public int kernelNormalization = 3;
+    
+    /**
+     * option "-C"
+     * the trade-off between training error and margin of the classifiers
+     * trained in mode 10, the option -c of svm_learn,
+     * 0: [avg. sqrt(K(x, x))]^-2 as svm_learn
+     */
+    public double svmCost = 0;
+    
     /* the path of input data */
     public String inputFilename = null;
     
@@ -125,6 +196,46 @@ public class RECKParameters implements Cloneable, Serializable
                     nbfolds = RECKConstants.atoi(argv[i]);
                     break;
                     
+                case 'w':
+                    nbthreads = RECKConstants.atoi(argv[i]);
+                    break;
+                    
+                case 'p':
+                    nbparsethreads = RECKConstants.atoi(argv[i]);
+                    break;
+                    
+                case 'c':
+                    parseCacheFolder = argv[i];
+                    break;
+                    
+                case 'm':
+                    parseCacheSize = RECKConstants.atoi(argv[i]);
+                    break;
+                    
+                case 'x':
+                    exportText = (RECKConstants.atoi(argv[i]) != 0);
+                    break;
+                    
+                case 'f':
+                    binaryFormat = (RECKConstants.atoi(argv[i]) != 0);
+                    break;
+                    
+                case 'e':
+                    sharedInstances = (RECKConstants.atoi(argv[i]) != 0);
+                    break;
+                    
+                case 'k':
+                    treeKernelParamFilename = argv[i];
+                    break;
+                    
+                case 'N':
+                    kernelNormalization = RECKConstants.atoi(argv[i]);
+                    break;
+                    
+                case 'C':
+                    svmCost = RECKConstants.atof(argv[i]);
+                    break;
+                    
                 default:
                     System.err.print("unknown option\n");
             }
@@ -134,7 +245,7 @@ public class RECKParameters implements Cloneable, Serializable
     public String toString() {
         String st = "";
 
-        st = "-t " + tree_type + " -k " + "-n " + nbfolds;
+        st = "-t " + tree_type + " -k " + "-n " + nbfolds + " -w " + nbthreads + " -p " + nbparsethreads;
         
         return st;
     }
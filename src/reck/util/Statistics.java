@@ -25,6 +25,8 @@ package reck.util;
 
 /**
  * A set of properties used for statistics.
+ * Counters are updated while holding the lock on this class,
+ * since documents may be processed by several threads.
  * 
  * @author Truc-Vien T. Nguyen
  */
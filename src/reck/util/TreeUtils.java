@@ -30,6 +30,7 @@ import reck.Mention;
 import reck.Relation;
 import reck.trees.RECKCTTreeNodeImpl;
 import reck.trees.RECKDPTreeNodeImpl;
+import reck.trees.RECKLCAIndex;
 import reck.trees.RECKParseTreeImpl;
 import reck.trees.RECKTypedDependency;
 
@@ -121,12 +122,15 @@ public final class TreeUtils {
                     start = new Long(currentCTNode.getPosition().getStart().longValue() );
                     end  = new Long(currentCTNode.getPosition().getEnd().longValue() - 1);
 
+                    // the constituent tree shares its subtrees with the parse tree
                     if (!foundM1 && (mention1.getEntity().getType().equals(currentCTNode.label().value())) && RECKConstants.newMatching(mention1, start, end) ) {
+                        currentCTNode = ownNode((RECKCTTreeNodeImpl)relationTree, currentCTNode);
                         currentCTNode.setLabel(new StringLabel(t1 + currentCTNode.label().value()));
                         foundM1 = true;
                     }
 
                     else if (!foundM2 && (mention2.getEntity().getType().equals(currentCTNode.label().value())) && RECKConstants.newMatching(mention2, start, end) ) {
+                        currentCTNode = ownNode((RECKCTTreeNodeImpl)relationTree, currentCTNode);
                         currentCTNode.setLabel(new StringLabel(t2 + currentCTNode.label().value()));
                         foundM2 = true;
                     }
@@ -143,7 +147,6 @@ public final class TreeUtils {
     public static final RECKDPTreeNodeImpl buildDependencyPT(RECKParseTreeImpl rpTree, Mention m1, Mention m2) {
         
         // get a copy to re-assign old value later
-        RECKDPTreeNodeImpl parseTree = rpTree.getDPParseTree();
         RECKDPTreeNodeImpl rtree = null;
         RECKDPTreeNodeImpl node1 = rpTree.getDPTreeByEntity(m1);
         RECKDPTreeNodeImpl node2 = rpTree.getDPTreeByEntity(m2);
@@ -159,7 +162,7 @@ public final class TreeUtils {
                 node2 = tempN;
             }
             
-            rtree = buildDependencyPT(parseTree, node1, node2);
+            rtree = buildDependencyPT(rpTree.getDPIndex(), node1, node2);
             
             /* if (!RECKConstants.mentionOrder(m1, m2))
                 reverseDPTreeDirection(rtree);*/
@@ -167,7 +170,9 @@ public final class TreeUtils {
         }
         else {
             System.err.println("Relation out of one sentence between " + m1.getId() + " and " + m2.getId());
-            Statistics.nbr_out_relations++;
+            synchronized (Statistics.class) {
+                Statistics.nbr_out_relations++;
+            }
         }
         
         return rtree;
@@ -175,104 +180,47 @@ public final class TreeUtils {
     
     /** get a copy of the Path-enclosed Tree */
     public static final RECKDPTreeNodeImpl buildDependencyPT(RECKDPTreeNodeImpl parseTree, RECKDPTreeNodeImpl node1, RECKDPTreeNodeImpl node2) {
+        return buildDependencyPT(new RECKLCAIndex(parseTree), node1, node2);
+    } // buildDependencyPT
+    
+    /**
+     * get a copy of the Path-enclosed Tree from the index of the parse tree:
+     * the paths from both nodes up to their lowest common ancestor
+     */
+    public static final RECKDPTreeNodeImpl buildDependencyPT(RECKLCAIndex index, RECKDPTreeNodeImpl node1, RECKDPTreeNodeImpl node2) {
         
-        // get a copy to re-assign old value later
-        RECKDPTreeNodeImpl rtree = null;
-        boolean reach = false;
+        if (node1.subTreeContains(node2))
+            return buildDependencyPT_Contains(null, node1, node2);
+        else if (node2.subTreeContains(node1))
+            return buildDependencyPT_Contains(null, node2, node1);
         
-        RECKDPTreeNodeImpl currentNode = node1;
-
-        if (node1.subTreeList().contains(node2))
-            return buildDependencyPT_Contains(parseTree, node1, node2);
-        else if (node2.subTreeList().contains(node1))
-            return buildDependencyPT_Contains(parseTree, node2, node1);
-
-        RECKDPTreeNodeImpl parent = currentNode.clone(), nextNode = null, child = null;
-
-        // go up one level until find common ancestor
-        while (!reach) {
-            nextNode = (RECKDPTreeNodeImpl)currentNode.parent(parseTree);
-            int index = nextNode.indexOf(currentNode);
-
-            child = parent;
-            parent = nextNode.clone();
-            parent.setChild(index, child);
-            parent.removeLeftChildren(index);
-
-            currentNode = nextNode;
-
-            reach = parent.subTreeList().contains(node2);
-            
-            if (!reach && (index < nextNode.numChildren() - 1) ) {
-                parent.removeRightChildren(1);
-            }
-        }
-
-        // common ancestor
-        rtree = parent;
-
-        currentNode = node2;
-        nextNode = null;
-        parent = currentNode.clone();
-        // go up one level until encounter common ancestor
-        while (currentNode != rtree) {
-            nextNode = (RECKDPTreeNodeImpl)currentNode.parent(rtree);
-            int index = nextNode.indexOf(currentNode);
-
-            child = parent;
-            parent = nextNode;
-            parent.setChild(index, child);
-
-            if (index < nextNode.numChildren() - 1) {
-                parent.removeRightChildren(index + 1);
-            }
-
-            currentNode = nextNode;
-            
-            if (currentNode != rtree) 
-                parent.removeLeftChildren(index);            
-        }
+        RECKDPTreeNodeImpl ancestor = (RECKDPTreeNodeImpl)index.lowestCommonAncestor(node1.getPreorder(), node2.getPreorder());
+        RECKDPTreeNodeImpl left = node1.clone(), right = node2.clone();
+        RECKDPTreeNodeImpl currentNode;
         
-        removeChildrenBetween(rtree, 0, rtree.numChildren() - 1);
+        for (currentNode = node1; currentNode.parent() != ancestor; currentNode = currentNode.parent())
+            left = currentNode.parent().copyNode(new Tree[] {left});
+        int index1 = indexOfNode(ancestor, currentNode);
         
-        return rtree;
+        for (currentNode = node2; currentNode.parent() != ancestor; currentNode = currentNode.parent())
+            right = currentNode.parent().copyNode(new Tree[] {right});
+        int index2 = indexOfNode(ancestor, currentNode);
+        
+        // the path of node1 comes first under the ancestor
+        if (index1 > index2)
+            return buildDependencyPT(index, node2, node1);
+        
+        return ancestor.copyNode(new Tree[] {left, right});
     } // buildDependencyPT
     
-    private static void removeChildrenBetween(RECKDPTreeNodeImpl node, int l, int r) {
-        Tree[] kids = node.children();
-        Tree newKids[] = new Tree[] {kids[l], kids[r]};
-        node.setChildren(newKids);
-    }
-    
+    /** get a copy of the path from node1 down to its descendant node2 */
     public static final RECKDPTreeNodeImpl buildDependencyPT_Contains(RECKDPTreeNodeImpl parseTree, RECKDPTreeNodeImpl node1, RECKDPTreeNodeImpl node2) {
         
-        // get a copy to re-assign old value later
-        RECKDPTreeNodeImpl rtree = null;
-        boolean reach = false;
-        
-        RECKDPTreeNodeImpl currentNode = node2;
-
-        RECKDPTreeNodeImpl parent = currentNode.clone(), nextNode = null, child = null;
-
-        while (!reach) {
-            nextNode = (RECKDPTreeNodeImpl)currentNode.parent(parseTree);
-            int index = nextNode.indexOf(currentNode);
-
-            child = parent;
-            parent = nextNode.clone();
-            parent.setChild(index, child);
-            parent.removeLeftChildren(index);
-
-            if (index < nextNode.numChildren() - 1) {
-                parent.removeRightChildren(1);
-            }
-
-            currentNode = nextNode;
-
-            reach = (currentNode == node1);
+        RECKDPTreeNodeImpl rtree = node2.clone();
+        for (RECKDPTreeNodeImpl currentNode = node2; currentNode != node1; ) {
+            currentNode = currentNode.parent();
+            rtree = currentNode.copyNode(new Tree[] {rtree});
         }
-
-        rtree = parent;
         
         return rtree;
     } // buildDependencyPT
@@ -281,7 +229,6 @@ public final class TreeUtils {
     public static final RECKCTTreeNodeImpl buildPT(RECKParseTreeImpl rpTree, Mention m1, Mention m2) {
         
         // get a copy to re-assign old value later
-        RECKCTTreeNodeImpl parseTree = rpTree.getCTParseTree();
         RECKCTTreeNodeImpl rtree = null;
         RECKCTTreeNodeImpl node1 = rpTree.getCTTreeByEntity(m1);
         RECKCTTreeNodeImpl node2 = rpTree.getCTTreeByEntity(m2);
@@ -297,12 +244,14 @@ public final class TreeUtils {
                 node2 = tempN;
             }
             
-            rtree = buildPT(parseTree, node1, node2);
+            rtree = buildPT(rpTree.getCTIndex(), node1, node2);
             
         }
         else {
             System.err.println("Relation out of one sentence between " + m1.getId() + " and " + m2.getId());
-            Statistics.nbr_out_relations++;
+            synchronized (Statistics.class) {
+                Statistics.nbr_out_relations++;
+            }
         }
         
         return rtree;
@@ -310,56 +259,133 @@ public final class TreeUtils {
     
     /** get a copy of the Path-enclosed Tree */
     public static final RECKCTTreeNodeImpl buildPT(RECKCTTreeNodeImpl parseTree, RECKCTTreeNodeImpl node1, RECKCTTreeNodeImpl node2) {
+        return buildPT(new RECKLCAIndex(parseTree), node1, node2);
+    } // getPT for nodes
+    
+    /**
+     * get the Path-enclosed Tree from the index of the parse tree:
+     * the lowest common ancestor of both nodes, with the children between
+     * their paths, the children right of the path of node1
+     * and the children left of the path of node2.
+     * Only the nodes on both paths are copied, the other subtrees are shared
+     * with the parse tree and must be changed with {@link #ownNode} only.
+     */
+    public static final RECKCTTreeNodeImpl buildPT(RECKLCAIndex index, RECKCTTreeNodeImpl node1, RECKCTTreeNodeImpl node2) {
         
-        // get a copy to re-assign old value later
-        RECKCTTreeNodeImpl rtree = null;
-        boolean reach = false;
+        if (node1.subTreeContains(node2))
+            return node1.copyNode((Tree[])node1.children().clone());
+        else if (node2.subTreeContains(node1))
+            return node2.copyNode((Tree[])node2.children().clone());
         
-        RECKCTTreeNodeImpl currentNode = node1;
-
-        if (node1.subTreeList().contains(node2))
-            return node1.clone();
-        else if (node2.subTreeList().contains(node1))
-            return node2.clone();
-
-        RECKCTTreeNodeImpl parent = currentNode.clone(), nextNode = null, child = null;
-
-        while (!reach) {
-            nextNode = (RECKCTTreeNodeImpl)currentNode.parent(parseTree);
-            int index = nextNode.indexOf(currentNode);
-
-            child = parent;
-            parent = nextNode.clone();
-            parent.setChild(index, child);
-            parent.removeLeftChildren(index);   
-
-            currentNode = nextNode;
-
-            reach = parent.subTreeList().contains(node2);
+        RECKCTTreeNodeImpl ancestor = (RECKCTTreeNodeImpl)index.lowestCommonAncestor(node1.getPreorder(), node2.getPreorder());
+        RECKCTTreeNodeImpl left = node1, right = node2;
+        RECKCTTreeNodeImpl currentNode, nextNode;
+        
+        for (currentNode = node1; (nextNode = currentNode.parent()) != ancestor; currentNode = nextNode) {
+            int i = indexOfNode(nextNode, currentNode);
+            left = nextNode.copyNode(pathChildren(nextNode, i, nextNode.numChildren() - 1, left, null));
         }
-
-        rtree = parent;
-
-        currentNode = node2;
-        nextNode = null;
-        parent = currentNode.clone();
-        while (currentNode != rtree) {
-            nextNode = (RECKCTTreeNodeImpl)currentNode.parent(rtree);
-            int index = nextNode.indexOf(currentNode);
-
-            child = parent;
-            parent = nextNode;
-            parent.setChild(index, child);
-
-            if (index < nextNode.numChildren() - 1) {
-                parent.removeRightChildren(index + 1);
-            }
-
-            currentNode = nextNode;
+        int index1 = indexOfNode(ancestor, currentNode);
+        
+        for (currentNode = node2; (nextNode = currentNode.parent()) != ancestor; currentNode = nextNode) {
+            int i = indexOfNode(nextNode, currentNode);
+            right = nextNode.copyNode(pathChildren(nextNode, 0, i, null, right));
         }
+        int index2 = indexOfNode(ancestor, currentNode);
         
-        return rtree;
+        // the path of node1 comes first under the ancestor
+        if (index1 > index2)
+            return buildPT(index, node2, node1);
+        
+        return ancestor.copyNode(pathChildren(ancestor, index1, index2, left, right));
     } // getPT for nodes
+    
+    /**
+     * The children of a constituent node from l to r, shared with the node,
+     * the first and the last one being replaced when given.
+     */
+    private static Tree[] pathChildren(RECKCTTreeNodeImpl node, int l, int r, Tree first, Tree last) {
+        Tree[] newKids = new Tree[r - l + 1];
+        System.arraycopy(node.children(), l, newKids, 0, r - l + 1);
+        if (first != null)
+            newKids[0] = first;
+        if (last != null)
+            newKids[r - l] = last;
+        return newKids;
+    }
+    
+    /**
+     * Make a node of a Path-enclosed Tree its own before changing it:
+     * if it is shared with the parse tree, it is copied, with the shared
+     * nodes above it, and the copy replaces it in the Path-enclosed Tree.
+     * Returns the node to change.
+     */
+    public static final RECKCTTreeNodeImpl ownNode(RECKCTTreeNodeImpl root, RECKCTTreeNodeImpl node) {
+        ArrayList path = new ArrayList();
+        if (node == root || !findPath(root, node, path))
+            return node;
+        
+        // the root is always a copy, and a child is owned by its parent
+        // if the parent is owned and the child points back to it
+        RECKCTTreeNodeImpl parent = root;
+        boolean owned = true;
+        for (int k = path.size() - 1; k >= 0; k--) {
+            RECKCTTreeNodeImpl child = (RECKCTTreeNodeImpl)path.get(k);
+            owned = owned && child.parent() == parent;
+            if (!owned) {
+                RECKCTTreeNodeImpl copy = child.copyNode((Tree[])child.children().clone());
+                parent.setChild(indexOfNode(parent, child), copy);
+                child = copy;
+            }
+            parent = child;
+        }
+        return parent;
+    }
+    
+    /** The path from below a node down to a descendant, found by identity, in reverse order. */
+    private static boolean findPath(Tree node, Tree target, ArrayList path) {
+        Tree[] kids = node.children();
+        for (int i = 0; i < kids.length; i++) {
+            if (kids[i] == target || findPath(kids[i], target, path)) {
+                path.add(kids[i]);
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * The parents of the leaves of a tree, in the order of getLeaves,
+     * found in one traversal. The parent of a tree which is a leaf is null.
+     */
+    public static final ArrayList getPreterminals(Tree tree) {
+        ArrayList preterminals = new ArrayList();
+        if (tree.isLeaf())
+            preterminals.add(null);
+        else
+            addPreterminals(tree, preterminals);
+        return preterminals;
+    }
+    
+    private static void addPreterminals(Tree node, ArrayList preterminals) {
+        Tree[] kids = node.children();
+        for (int i = 0; i < kids.length; i++) {
+            if (kids[i].isLeaf())
+                preterminals.add(node);
+            else
+                addPreterminals(kids[i], preterminals);
+        }
+    }
+    
+    /** The index of a child, found by identity. */
+    private static int indexOfNode(Tree parent, Tree child) {
+        Tree[] kids = parent.children();
+        for (int i = 0; i < kids.length; i++) {
+            if (kids[i] == child)
+                return i;
+        }
+        return -1;
+    }
 
   /** Print the internal part of a tree having already identified it.
    *  The ID and outer XML element is printed wrapping this method, but none
@@ -443,9 +469,9 @@ public final class TreeUtils {
             // Child Branch on the left
             if (dp.getPosition().getStart().intValue() < DPTree.getPosition().getStart().intValue()) {
                 dp = (RECKDPTreeNodeImpl)DPTree.getLeaves().get(0);
-                while (!dp.equals(DPTree)) {
+                while (dp != DPTree) {
                     path.add(dp);
-                    dp = dp.parent(DPTree);
+                    dp = dp.parent();
                 }
                 path.add(DPTree);
             }
@@ -463,9 +489,9 @@ public final class TreeUtils {
         else if (DPTree.numChildren() == 2) {
             dp = (RECKDPTreeNodeImpl)DPTree.getLeaves().get(0);
             // Construct Path on the left
-            while (!dp.equals(DPTree)) {
+            while (dp != DPTree) {
                 path.add(dp);
-                dp = dp.parent(DPTree);
+                dp = dp.parent();
             }
             path.add(DPTree);
             